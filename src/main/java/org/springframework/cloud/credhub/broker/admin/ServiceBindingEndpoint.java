@@ -0,0 +1,104 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.admin;
+
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.cloud.credhub.broker.audit.AuditTrail;
+import org.springframework.cloud.credhub.broker.repository.BindingPlacement;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.service.CredhubServiceInstanceBindingService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.lang.Nullable;
+
+/**
+ * Looks up bindings by application GUID and/or service instance, and removes all
+ * bindings of an application in one call.
+ */
+@Endpoint(id = "servicebindings")
+public class ServiceBindingEndpoint {
+	private static final int DEFAULT_PAGE_SIZE = 100;
+	private static final int MAX_PAGE_SIZE = 1000;
+
+	private final ServiceBindingRepository bindingRepository;
+	private final CredhubServiceInstanceBindingService bindingService;
+
+	public ServiceBindingEndpoint(ServiceBindingRepository bindingRepository,
+			CredhubServiceInstanceBindingService bindingService) {
+		this.bindingRepository = bindingRepository;
+		this.bindingService = bindingService;
+	}
+
+	@ReadOperation
+	public Map<String, Object> bindings(@Nullable String appGuid,
+			@Nullable String instanceId, @Nullable Integer page, @Nullable Integer size) {
+		PageRequest pageable = PageRequest.of(page != null ? page : 0,
+				size != null ? Math.min(size, MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE);
+
+		Page<BindingPlacement> placements;
+		if (appGuid != null && instanceId != null) {
+			placements = bindingRepository.findPlacementsByAppGuidAndInstanceId(appGuid,
+					instanceId, pageable);
+		}
+		else if (appGuid != null) {
+			placements = bindingRepository.findPlacementsByAppGuid(appGuid, pageable);
+		}
+		else if (instanceId != null) {
+			placements = bindingRepository.findPlacementsByInstanceId(instanceId, pageable);
+		}
+		else {
+			throw new InvalidEndpointRequestException("appGuid or instanceId is required",
+					"Missing appGuid or instanceId");
+		}
+
+		List<Map<String, Object>> content = placements.getContent().stream()
+				.map(ServiceBindingEndpoint::describe).collect(Collectors.toList());
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("bindings", content);
+		result.put("page", placements.getNumber());
+		result.put("size", placements.getSize());
+		result.put("total", placements.getTotalElements());
+		return result;
+	}
+
+	@DeleteOperation
+	public Map<String, Object> unbindApp(@Selector String appGuid,
+			@Nullable Principal principal) {
+		return bindingService.deleteBindingsForApp(appGuid,
+				principal != null ? AuditTrail.adminIdentity(principal.getName()) : null);
+	}
+
+	private static Map<String, Object> describe(BindingPlacement placement) {
+		Map<String, Object> binding = new LinkedHashMap<>();
+		binding.put("bindingId", placement.getBindingId());
+		binding.put("instanceId", placement.getInstanceId());
+		binding.put("planId", placement.getPlanId());
+		binding.put("appGuid", placement.getAppGuid());
+		binding.put("credhubShard", placement.getCredhubShard());
+		return binding;
+	}
+}
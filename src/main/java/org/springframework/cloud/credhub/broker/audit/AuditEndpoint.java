@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.audit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.lang.Nullable;
+
+/**
+ * Pages through the audit trail, newest first, optionally filtered by service instance
+ * or principal. Only events written by the database sink can be queried.
+ */
+@Endpoint(id = "brokeraudit")
+public class AuditEndpoint {
+	private static final int DEFAULT_PAGE_SIZE = 50;
+	private static final int MAX_PAGE_SIZE = 500;
+
+	private final AuditTrail auditTrail;
+	private final AuditRecordRepository recordRepository;
+	private final AuditProperties properties;
+
+	public AuditEndpoint(AuditTrail auditTrail, AuditRecordRepository recordRepository,
+			AuditProperties properties) {
+		this.auditTrail = auditTrail;
+		this.recordRepository = recordRepository;
+		this.properties = properties;
+	}
+
+	@ReadOperation
+	public Map<String, Object> events(@Nullable String instanceId,
+			@Nullable String principal, @Nullable Integer page, @Nullable Integer size) {
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("statistics", auditTrail.statistics());
+		if (properties.getSink() != AuditProperties.Sink.DATABASE) {
+			return result;
+		}
+
+		Pageable pageable = PageRequest.of(page != null ? Math.max(0, page) : 0,
+				size != null ? Math.min(Math.max(1, size), MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE,
+				Sort.by(Sort.Direction.DESC, "occurredAt", "id"));
+
+		Page<AuditRecord> records;
+		if (instanceId != null) {
+			records = recordRepository.findByInstanceId(instanceId, pageable);
+		}
+		else if (principal != null) {
+			records = recordRepository.findByPrincipal(principal, pageable);
+		}
+		else {
+			records = recordRepository.findAll(pageable);
+		}
+
+		result.put("page", records.getNumber());
+		result.put("size", records.getSize());
+		result.put("totalElements", records.getTotalElements());
+		result.put("totalPages", records.getTotalPages());
+		result.put("events", records.getContent());
+		return result;
+	}
+}
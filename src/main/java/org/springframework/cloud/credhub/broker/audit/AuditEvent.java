@@ -0,0 +1,43 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.audit;
+
+import java.time.Instant;
+
+import lombok.Getter;
+
+@Getter
+public class AuditEvent {
+	private final Instant occurredAt;
+	private final String principal;
+	private final String originatingIdentity;
+	private final AuditAction action;
+	private final AuditResource resourceType;
+	private final String resourceId;
+	private final String instanceId;
+
+	public AuditEvent(String principal, String originatingIdentity, AuditAction action,
+			AuditResource resourceType, String resourceId, String instanceId) {
+		this.occurredAt = Instant.now();
+		this.principal = principal;
+		this.originatingIdentity = originatingIdentity;
+		this.action = action;
+		this.resourceType = resourceType;
+		this.resourceId = resourceId;
+		this.instanceId = instanceId;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.audit;
+
+import java.time.Duration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("broker.audit")
+@Getter
+@Setter
+public class AuditProperties {
+	private boolean enabled = true;
+
+	private Sink sink = Sink.DATABASE;
+
+	/**
+	 * Number of events the buffer holds, rounded up to a power of two.
+	 */
+	private int bufferSize = 8192;
+
+	/**
+	 * Maximum number of events written per batch. A full batch is flushed immediately.
+	 */
+	private int flushSize = 256;
+
+	/**
+	 * Longest time an event waits in the buffer before being flushed.
+	 */
+	private Duration flushInterval = Duration.ofSeconds(1);
+
+	private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+	/**
+	 * How long a caller waits for room in a full buffer under the {@code BLOCK} policy
+	 * before the event is dropped.
+	 */
+	private Duration blockTimeout = Duration.ofMillis(100);
+
+	private File file = new File();
+
+	public enum Sink {
+		DATABASE, FILE
+	}
+
+	public enum OverflowPolicy {
+		/**
+		 * Drop the event and count it.
+		 */
+		DROP,
+		/**
+		 * Wait for the flusher to make room, up to the block timeout.
+		 */
+		BLOCK
+	}
+
+	@Getter
+	@Setter
+	public static class File {
+		private String path = "audit/broker-audit.log";
+		private long maxFileSize = 10 * 1024 * 1024;
+		private int maxHistory = 10;
+	}
+}
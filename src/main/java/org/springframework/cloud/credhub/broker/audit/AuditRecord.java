@@ -0,0 +1,63 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.audit;
+
+import java.time.Instant;
+
+import javax.persistence.*;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Read model of the {@code audit_events} table. Rows are written in batches by the
+ * {@link DatabaseAuditSink}.
+ */
+@Entity
+@Table(name = "audit_events", indexes = {
+		@Index(name = "idx_audit_events_occurred_at", columnList = "occurred_at"),
+		@Index(name = "idx_audit_events_instance_id", columnList = "instance_id") })
+@Getter
+@NoArgsConstructor
+public class AuditRecord {
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "occurred_at", nullable = false)
+	private Instant occurredAt;
+
+	@Column(length = 100)
+	private String principal;
+
+	@Column(length = 100)
+	private String originatingIdentity;
+
+	@Enumerated(EnumType.STRING)
+	@Column(length = 10)
+	private AuditAction action;
+
+	@Enumerated(EnumType.STRING)
+	@Column(length = 20)
+	private AuditResource resourceType;
+
+	@Column(length = 50)
+	private String resourceId;
+
+	@Column(name = "instance_id", length = 50)
+	private String instanceId;
+}
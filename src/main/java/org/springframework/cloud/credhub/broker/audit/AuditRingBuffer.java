@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.audit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer. Every slot
+ * carries a sequence number telling producers whether it is free and the consumer
+ * whether it has been published.
+ */
+class AuditRingBuffer {
+	private final int mask;
+	private final AtomicReferenceArray<AuditEvent> events;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head;
+
+	AuditRingBuffer(int requestedCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1) << 1);
+		this.mask = capacity - 1;
+		this.events = new AtomicReferenceArray<>(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * @return {@code false} if the buffer is full
+	 */
+	boolean offer(AuditEvent event) {
+		long position = tail.get();
+		for (;;) {
+			int index = (int) (position & mask);
+			long available = sequences.get(index) - position;
+			if (available == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					events.set(index, event);
+					sequences.set(index, position + 1);
+					return true;
+				}
+				position = tail.get();
+			}
+			else if (available < 0) {
+				return false;
+			}
+			else {
+				position = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Move up to {@code max} published events into {@code sink}. Must only be called
+	 * from the consumer thread.
+	 */
+	int drainTo(List<AuditEvent> sink, int max) {
+		int drained = 0;
+		long position = head;
+		while (drained < max) {
+			int index = (int) (position & mask);
+			if (sequences.get(index) != position + 1) {
+				break;
+			}
+			sink.add(events.get(index));
+			events.set(index, null);
+			sequences.set(index, position + mask + 1);
+			position++;
+			drained++;
+		}
+		head = position;
+		return drained;
+	}
+
+	int size() {
+		return (int) Math.max(0, tail.get() - head);
+	}
+
+	int capacity() {
+		return mask + 1;
+	}
+}
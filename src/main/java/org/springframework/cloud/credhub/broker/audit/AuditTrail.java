@@ -0,0 +1,237 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.audit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.servicebroker.model.Context;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Records broker mutations without touching the database on the caller's thread.
+ * Events are put on an {@link AuditRingBuffer} and written to the {@link AuditSink} in
+ * batches by a single flusher thread, either when a batch is full or when the flush
+ * interval elapses.
+ */
+public class AuditTrail implements SmartLifecycle {
+	private static final Log log = LogFactory.getLog(AuditTrail.class);
+
+	private static final String ORIGINATING_USER_KEY = "user_id";
+	private static final String ADMIN_PLATFORM = "admin";
+
+	private final AuditProperties properties;
+	private final AuditSink sink;
+	private final AuditRingBuffer buffer;
+	private final long flushIntervalNanos;
+	private final Object flushLock = new Object();
+
+	private final LongAdder recorded = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder blocked = new LongAdder();
+	private final LongAdder flushed = new LongAdder();
+	private final LongAdder lost = new LongAdder();
+
+	private volatile Thread flusher;
+	private volatile boolean running;
+
+	public AuditTrail(AuditProperties properties, AuditSink sink) {
+		this.properties = properties;
+		this.sink = sink;
+		this.buffer = new AuditRingBuffer(properties.getBufferSize());
+		this.flushIntervalNanos = properties.getFlushInterval().toNanos();
+	}
+
+	public void record(AuditAction action, AuditResource resourceType, String resourceId,
+			String instanceId, Context originatingIdentity) {
+		if (!properties.isEnabled()) {
+			return;
+		}
+
+		AuditEvent event = new AuditEvent(principal(), originatingUser(originatingIdentity),
+				action, resourceType, resourceId, instanceId);
+		if (!running && flusher != null) {
+			writeStopped(event);
+			return;
+		}
+		if (buffer.offer(event) || (properties.getOverflowPolicy() == AuditProperties.OverflowPolicy.BLOCK
+				&& offerBlocking(event))) {
+			recorded.increment();
+			if (buffer.size() >= properties.getFlushSize()) {
+				LockSupport.unpark(flusher);
+			}
+		}
+		else {
+			dropped.increment();
+		}
+	}
+
+	/**
+	 * Requests still served after {@link #stop()} have nobody to flush their events, so
+	 * those are written one by one. The flusher may still be draining, so this takes
+	 * its lock and the buffer keeps a single consumer.
+	 */
+	private void writeStopped(AuditEvent event) {
+		recorded.increment();
+		synchronized (flushLock) {
+			flushAll(new ArrayList<>(1));
+			try {
+				sink.write(Collections.singletonList(event));
+				flushed.increment();
+			}
+			catch (Exception e) {
+				lost.increment();
+				log.error("Failed to write an audit event", e);
+			}
+		}
+	}
+
+	private boolean offerBlocking(AuditEvent event) {
+		blocked.increment();
+		long deadline = System.nanoTime() + properties.getBlockTimeout().toNanos();
+		do {
+			LockSupport.unpark(flusher);
+			LockSupport.parkNanos(100_000);
+			if (buffer.offer(event)) {
+				return true;
+			}
+		}
+		while (System.nanoTime() < deadline);
+		return false;
+	}
+
+	public Map<String, Object> statistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("enabled", properties.isEnabled());
+		statistics.put("sink", properties.getSink());
+		statistics.put("buffered", buffer.size());
+		statistics.put("capacity", buffer.capacity());
+		statistics.put("recorded", recorded.sum());
+		statistics.put("dropped", dropped.sum());
+		statistics.put("blocked", blocked.sum());
+		statistics.put("flushed", flushed.sum());
+		statistics.put("lost", lost.sum());
+		return statistics;
+	}
+
+	private void flushLoop() {
+		List<AuditEvent> batch = new ArrayList<>(properties.getFlushSize());
+		while (running) {
+			LockSupport.parkNanos(this, flushIntervalNanos);
+			flushAll(batch);
+		}
+		flushAll(batch);
+	}
+
+	private void flushAll(List<AuditEvent> batch) {
+		synchronized (flushLock) {
+			while (buffer.drainTo(batch, properties.getFlushSize()) > 0) {
+				try {
+					sink.write(batch);
+					flushed.add(batch.size());
+				}
+				catch (Exception e) {
+					lost.add(batch.size());
+					log.error("Failed to write " + batch.size() + " audit events", e);
+				}
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * The originating identity of a change made through an admin endpoint, recorded as
+	 * {@code admin/<username>}.
+	 */
+	public static Context adminIdentity(String username) {
+		return Context.builder().platform(ADMIN_PLATFORM)
+				.property(ORIGINATING_USER_KEY, username).build();
+	}
+
+	private static String principal() {
+		Authentication authentication = SecurityContextHolder.getContext()
+				.getAuthentication();
+		return authentication != null ? authentication.getName() : null;
+	}
+
+	private static String originatingUser(Context originatingIdentity) {
+		if (originatingIdentity == null) {
+			return null;
+		}
+		Object user = originatingIdentity.getProperty(ORIGINATING_USER_KEY);
+		return originatingIdentity.getPlatform() + (user != null ? "/" + user : "");
+	}
+
+	@Override
+	public void start() {
+		running = true;
+		flusher = new Thread(this::flushLoop, "audit-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+		Thread thread = flusher;
+		if (thread == null) {
+			return;
+		}
+		LockSupport.unpark(thread);
+		try {
+			thread.join(properties.getFlushInterval().toMillis() + 5000);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return true;
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	/**
+	 * Started first and stopped last. Spring Boot stops the embedded web server only
+	 * once every lifecycle bean is stopped, so events of requests it still serves are
+	 * written directly.
+	 */
+	@Override
+	public int getPhase() {
+		return Integer.MIN_VALUE;
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.audit;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class DatabaseAuditSink implements AuditSink {
+	private static final String INSERT = "INSERT INTO audit_events (occurred_at, principal, "
+			+ "originating_identity, action, resource_type, resource_id, instance_id) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public DatabaseAuditSink(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	@Override
+	public void write(List<AuditEvent> events) {
+		jdbcTemplate.batchUpdate(INSERT, events, events.size(), (statement, event) -> {
+			statement.setTimestamp(1, Timestamp.from(event.getOccurredAt()));
+			statement.setString(2, event.getPrincipal());
+			statement.setString(3, event.getOriginatingIdentity());
+			statement.setString(4, event.getAction().name());
+			statement.setString(5, event.getResourceType().name());
+			statement.setString(6, event.getResourceId());
+			statement.setString(7, event.getInstanceId());
+		});
+	}
+}
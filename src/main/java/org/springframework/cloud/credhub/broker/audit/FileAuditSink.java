@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.audit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Appends audit events as JSON lines to a local file. When the file grows past the
+ * configured size it is renamed with a timestamp suffix and a new one is started;
+ * only the most recent rolled files are kept.
+ */
+public class FileAuditSink implements AuditSink {
+	private final Path file;
+	private final long maxFileSize;
+	private final int maxHistory;
+	private final ObjectMapper objectMapper;
+
+	public FileAuditSink(Path file, long maxFileSize, int maxHistory,
+			ObjectMapper objectMapper) {
+		this.file = file.toAbsolutePath();
+		this.maxFileSize = maxFileSize;
+		this.maxHistory = maxHistory;
+		this.objectMapper = objectMapper;
+	}
+
+	@Override
+	public void write(List<AuditEvent> events) throws IOException {
+		Files.createDirectories(file.getParent());
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			for (AuditEvent event : events) {
+				writer.write(objectMapper.writeValueAsString(event));
+				writer.newLine();
+			}
+		}
+		if (Files.size(file) >= maxFileSize) {
+			roll();
+		}
+	}
+
+	private void roll() throws IOException {
+		Files.move(file, file.resolveSibling(file.getFileName() + "." + System.currentTimeMillis()));
+
+		List<Path> rolled = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(file.getParent(),
+				file.getFileName() + ".*")) {
+			stream.forEach(rolled::add);
+		}
+		Collections.sort(rolled);
+		for (int i = 0; i < rolled.size() - maxHistory; i++) {
+			Files.deleteIfExists(rolled.get(i));
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.certificate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.openssl.PEMKeyPair;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+
+/**
+ * A parsed issuing CA. Parsing the PEM key and certificate is done once per load rather
+ * than once per issued certificate.
+ */
+final class CertificateAuthority {
+	private final String certificatePem;
+	private final X500Name subject;
+	private final PrivateKey privateKey;
+	private final AuthorityKeyIdentifier authorityKeyIdentifier;
+	private final String signatureAlgorithm;
+
+	private CertificateAuthority(String certificatePem, X509Certificate certificate,
+			PrivateKey privateKey) throws GeneralSecurityException {
+		this.certificatePem = certificatePem;
+		this.subject = new JcaX509CertificateHolder(certificate).getSubject();
+		this.privateKey = privateKey;
+		this.authorityKeyIdentifier = new JcaX509ExtensionUtils()
+				.createAuthorityKeyIdentifier(certificate);
+		this.signatureAlgorithm = "EC".equals(privateKey.getAlgorithm())
+				? "SHA256withECDSA" : "SHA256with" + privateKey.getAlgorithm();
+	}
+
+	static CertificateAuthority parse(String certificatePem, String privateKeyPem) {
+		try {
+			X509Certificate certificate = (X509Certificate) CertificateFactory
+					.getInstance("X.509").generateCertificate(new ByteArrayInputStream(
+							certificatePem.getBytes(StandardCharsets.US_ASCII)));
+			return new CertificateAuthority(certificatePem, certificate,
+					parsePrivateKey(privateKeyPem));
+		}
+		catch (GeneralSecurityException | IOException e) {
+			throw new IllegalStateException("Invalid CA certificate or private key", e);
+		}
+	}
+
+	private static PrivateKey parsePrivateKey(String pem) throws IOException {
+		try (PEMParser parser = new PEMParser(new StringReader(pem))) {
+			Object key = parser.readObject();
+			JcaPEMKeyConverter converter = new JcaPEMKeyConverter();
+			if (key instanceof PEMKeyPair) {
+				return converter.getKeyPair((PEMKeyPair) key).getPrivate();
+			}
+			if (key instanceof PrivateKeyInfo) {
+				return converter.getPrivateKey((PrivateKeyInfo) key);
+			}
+			throw new IOException("Unsupported CA private key format");
+		}
+	}
+
+	String getCertificatePem() {
+		return certificatePem;
+	}
+
+	X500Name getSubject() {
+		return subject;
+	}
+
+	PrivateKey getPrivateKey() {
+		return privateKey;
+	}
+
+	AuthorityKeyIdentifier getAuthorityKeyIdentifier() {
+		return authorityKeyIdentifier;
+	}
+
+	String getSignatureAlgorithm() {
+		return signatureAlgorithm;
+	}
+}
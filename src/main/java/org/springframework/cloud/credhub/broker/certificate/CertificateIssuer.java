@@ -0,0 +1,172 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.certificate;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.X500NameBuilder;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.springframework.cloud.credhub.broker.credhub.CredentialNames;
+import org.springframework.credhub.core.CredHubOperations;
+import org.springframework.credhub.support.certificate.CertificateCredential;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+
+/**
+ * Issues mTLS client certificates for bindings, signed by a CA that is loaded and
+ * parsed once and then kept in memory. Binding keys come from the {@link KeyPairPool}.
+ */
+public class CertificateIssuer {
+	private static final Log log = LogFactory.getLog(CertificateIssuer.class);
+
+	private static final Duration CLOCK_SKEW = Duration.ofMinutes(5);
+
+	private final CertificateProperties properties;
+	private final CredHubOperations credHubOperations;
+	private final KeyPairPool keyPairPool;
+	private final SecureRandom random = new SecureRandom();
+	private final ThreadLocal<JcaX509ExtensionUtils> extensionUtils = ThreadLocal
+			.withInitial(CertificateIssuer::newExtensionUtils);
+	private final AtomicReference<CertificateAuthority> authority = new AtomicReference<>();
+
+	public CertificateIssuer(CertificateProperties properties,
+			CredHubOperations credHubOperations, KeyPairPool keyPairPool) {
+		this.properties = properties;
+		this.credHubOperations = credHubOperations;
+		this.keyPairPool = keyPairPool;
+	}
+
+	/**
+	 * Issue a client certificate for a binding.
+	 * @return the certificate, its CA and private key, ready to be stored in CredHub
+	 */
+	public CertificateCredential issue(String bindingId, String instanceId) {
+		CertificateAuthority ca = authority();
+		KeyPair keyPair = keyPairPool.take();
+		Instant now = Instant.now();
+
+		X500Name subject = new X500NameBuilder(BCStyle.INSTANCE)
+				.addRDN(BCStyle.OU, "instance:" + instanceId)
+				.addRDN(BCStyle.CN, bindingId)
+				.build();
+		X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(ca.getSubject(),
+				new BigInteger(128, random), Date.from(now.minus(CLOCK_SKEW)),
+				Date.from(now.plus(properties.getValidity())), subject,
+				keyPair.getPublic());
+		try {
+			builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(false))
+					.addExtension(Extension.keyUsage, true,
+							new KeyUsage(KeyUsage.digitalSignature | KeyUsage.keyAgreement))
+					.addExtension(Extension.extendedKeyUsage, false,
+							new ExtendedKeyUsage(KeyPurposeId.id_kp_clientAuth))
+					.addExtension(Extension.authorityKeyIdentifier, false,
+							ca.getAuthorityKeyIdentifier())
+					.addExtension(Extension.subjectKeyIdentifier, false, extensionUtils.get()
+							.createSubjectKeyIdentifier(keyPair.getPublic()));
+
+			byte[] certificate = builder.build(new JcaContentSignerBuilder(
+					ca.getSignatureAlgorithm()).build(ca.getPrivateKey())).getEncoded();
+			return new CertificateCredential(Pems.certificate(certificate),
+					ca.getCertificatePem(), Pems.privateKey(keyPair.getPrivate().getEncoded()));
+		}
+		catch (IOException | OperatorCreationException e) {
+			throw new IllegalStateException("Failed to issue certificate for binding "
+					+ bindingId, e);
+		}
+	}
+
+	/**
+	 * Load the CA and issue a throwaway certificate so the first bind finds every code
+	 * path warm.
+	 */
+	public void warmUp() {
+		issue("warmup", "warmup");
+	}
+
+	public Map<String, Object> statistics() {
+		return keyPairPool.statistics();
+	}
+
+	@Scheduled(initialDelayString = "${broker.certificates.ca-refresh-interval:300000}",
+			fixedDelayString = "${broker.certificates.ca-refresh-interval:300000}")
+	public void refreshAuthority() {
+		if (authority.get() == null) {
+			return;
+		}
+		try {
+			authority.set(loadAuthority());
+		}
+		catch (RuntimeException e) {
+			log.warn("Failed to reload the issuing CA, keeping the current one", e);
+		}
+	}
+
+	private CertificateAuthority authority() {
+		CertificateAuthority current = authority.get();
+		if (current == null) {
+			current = loadAuthority();
+			if (!authority.compareAndSet(null, current)) {
+				current = authority.get();
+			}
+		}
+		return current;
+	}
+
+	private CertificateAuthority loadAuthority() {
+		if (StringUtils.hasText(properties.getCaCertificate())
+				&& StringUtils.hasText(properties.getCaPrivateKey())) {
+			return CertificateAuthority.parse(properties.getCaCertificate(),
+					properties.getCaPrivateKey());
+		}
+		CertificateCredential ca = credHubOperations
+				.getByName(CredentialNames.of(properties.getCaName()),
+						CertificateCredential.class)
+				.getValue();
+		return CertificateAuthority.parse(ca.getCertificate(), ca.getPrivateKey());
+	}
+
+	private static JcaX509ExtensionUtils newExtensionUtils() {
+		try {
+			return new JcaX509ExtensionUtils();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.certificate;
+
+import java.time.Duration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("broker.certificates")
+@Getter
+@Setter
+public class CertificateProperties {
+	/**
+	 * Publish the certificate plan.
+	 */
+	private boolean enabled = true;
+
+	/**
+	 * Name of the CredHub certificate credential holding the issuing CA.
+	 */
+	private String caName = "/credential-broker/ca";
+
+	/**
+	 * PEM encoded CA certificate and private key, used instead of the CredHub
+	 * credential when both are set.
+	 */
+	private String caCertificate;
+
+	private String caPrivateKey;
+
+	/**
+	 * Milliseconds between reloads of the CA, to pick up a rotated CA.
+	 */
+	private long caRefreshInterval = 300000;
+
+	/**
+	 * Validity of issued certificates.
+	 */
+	private Duration validity = Duration.ofDays(365);
+
+	/**
+	 * Named curve of the generated binding keys.
+	 */
+	private String curve = "secp256r1";
+
+	/**
+	 * Number of key pairs generated ahead of time in the background.
+	 */
+	private int keyPoolSize = 64;
+
+	/**
+	 * Threads refilling the key pool.
+	 */
+	private int keyPoolThreads = 1;
+}
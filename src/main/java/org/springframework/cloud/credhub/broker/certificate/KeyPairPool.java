@@ -0,0 +1,151 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.certificate;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * EC key pairs generated ahead of time by background threads, so issuing a certificate
+ * does not pay for key generation. When the pool runs dry keys are generated on the
+ * caller's thread.
+ */
+public class KeyPairPool implements SmartLifecycle {
+	private static final Log log = LogFactory.getLog(KeyPairPool.class);
+
+	private final String curve;
+	private final int threads;
+	private final BlockingQueue<KeyPair> pool;
+	private final SecureRandom random = new SecureRandom();
+	private final ThreadLocal<KeyPairGenerator> generators;
+
+	private final LongAdder pooled = new LongAdder();
+	private final LongAdder generatedInline = new LongAdder();
+	private final List<Thread> refillers = new ArrayList<>();
+	private volatile boolean running;
+
+	public KeyPairPool(String curve, int size, int threads) {
+		this.curve = curve;
+		this.threads = threads;
+		this.pool = new ArrayBlockingQueue<>(Math.max(1, size));
+		this.generators = ThreadLocal.withInitial(this::newGenerator);
+		// fail on an unknown curve at startup rather than on the first bind
+		generators.get();
+	}
+
+	public KeyPair take() {
+		KeyPair keyPair = pool.poll();
+		if (keyPair != null) {
+			pooled.increment();
+			return keyPair;
+		}
+		generatedInline.increment();
+		return generate();
+	}
+
+	public Map<String, Object> statistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("curve", curve);
+		statistics.put("available", pool.size());
+		statistics.put("capacity", pool.size() + pool.remainingCapacity());
+		statistics.put("pooled", pooled.sum());
+		statistics.put("generatedInline", generatedInline.sum());
+		return statistics;
+	}
+
+	@Override
+	public synchronized void start() {
+		running = true;
+		for (int i = 0; i < threads; i++) {
+			Thread refiller = new Thread(this::refill, "key-pool-" + i);
+			refiller.setDaemon(true);
+			refiller.start();
+			refillers.add(refiller);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		running = false;
+		refillers.forEach(Thread::interrupt);
+		refillers.clear();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return threads > 0;
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public int getPhase() {
+		return 0;
+	}
+
+	private void refill() {
+		try {
+			while (running) {
+				pool.put(generate());
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (RuntimeException e) {
+			log.error("Key pool refill stopped", e);
+		}
+	}
+
+	private KeyPair generate() {
+		return generators.get().generateKeyPair();
+	}
+
+	private KeyPairGenerator newGenerator() {
+		try {
+			KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+			generator.initialize(new ECGenParameterSpec(curve), random);
+			return generator;
+		}
+		catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Cannot generate " + curve + " keys", e);
+		}
+	}
+}
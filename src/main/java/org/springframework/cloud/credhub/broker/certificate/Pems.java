@@ -0,0 +1,44 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.certificate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * PEM encoding of DER structures.
+ */
+final class Pems {
+	private static final Base64.Encoder ENCODER = Base64.getMimeEncoder(64,
+			"\n".getBytes(StandardCharsets.US_ASCII));
+
+	private Pems() {
+	}
+
+	static String certificate(byte[] der) {
+		return encode("CERTIFICATE", der);
+	}
+
+	static String privateKey(byte[] pkcs8) {
+		return encode("PRIVATE KEY", pkcs8);
+	}
+
+	private static String encode(String type, byte[] der) {
+		return "-----BEGIN " + type + "-----\n" + ENCODER.encodeToString(der)
+				+ "\n-----END " + type + "-----\n";
+	}
+}
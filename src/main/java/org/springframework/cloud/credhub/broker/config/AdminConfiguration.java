@@ -0,0 +1,33 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import org.springframework.cloud.credhub.broker.admin.ServiceBindingEndpoint;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.service.CredhubServiceInstanceBindingService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AdminConfiguration {
+	@Bean
+	public ServiceBindingEndpoint serviceBindingEndpoint(
+			ServiceBindingRepository bindingRepository,
+			CredhubServiceInstanceBindingService bindingService) {
+		return new ServiceBindingEndpoint(bindingRepository, bindingService);
+	}
+}
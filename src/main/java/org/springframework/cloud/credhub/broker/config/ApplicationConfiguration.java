@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.credhub.broker.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnCloudPlatform;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.cloud.CloudPlatform;
@@ -23,10 +24,27 @@ import org.springframework.cloud.credhub.broker.model.ApplicationInformation;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.util.UriComponentsBuilder;
 
 @Configuration
+@EnableScheduling
 public class ApplicationConfiguration {
+	/**
+	 * Runs the {@code @Scheduled} jobs. Without it they share a single thread, so a long
+	 * store snapshot or quota reconciliation would hold back the CredHub health probes.
+	 * The default gives each of the broker's jobs a thread of its own.
+	 */
+	@Bean
+	public ThreadPoolTaskScheduler taskScheduler(
+			@Value("${broker.scheduling.pool-size:7}") int poolSize) {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(poolSize);
+		scheduler.setThreadNamePrefix("broker-scheduler-");
+		return scheduler;
+	}
+
 	@Bean
 	@ConditionalOnCloudPlatform(CloudPlatform.CLOUD_FOUNDRY)
 	public ApplicationInformation cloudFoundryApplicationInformation(Environment environment) {
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import java.nio.file.Paths;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.credhub.broker.audit.AuditEndpoint;
+import org.springframework.cloud.credhub.broker.audit.AuditProperties;
+import org.springframework.cloud.credhub.broker.audit.AuditRecordRepository;
+import org.springframework.cloud.credhub.broker.audit.AuditSink;
+import org.springframework.cloud.credhub.broker.audit.AuditTrail;
+import org.springframework.cloud.credhub.broker.audit.DatabaseAuditSink;
+import org.springframework.cloud.credhub.broker.audit.FileAuditSink;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+@EnableConfigurationProperties(AuditProperties.class)
+public class AuditConfiguration {
+	@Bean
+	public AuditSink auditSink(AuditProperties properties, JdbcTemplate jdbcTemplate,
+			ObjectMapper objectMapper) {
+		if (properties.getSink() == AuditProperties.Sink.FILE) {
+			AuditProperties.File file = properties.getFile();
+			return new FileAuditSink(Paths.get(file.getPath()), file.getMaxFileSize(),
+					file.getMaxHistory(), objectMapper);
+		}
+		return new DatabaseAuditSink(jdbcTemplate);
+	}
+
+	@Bean
+	public AuditTrail auditTrail(AuditProperties properties, AuditSink auditSink) {
+		return new AuditTrail(properties, auditSink);
+	}
+
+	@Bean
+	public AuditEndpoint auditEndpoint(AuditTrail auditTrail,
+			AuditRecordRepository auditRecordRepository, AuditProperties properties) {
+		return new AuditEndpoint(auditTrail, auditRecordRepository, properties);
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import java.util.concurrent.ForkJoinPool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.credhub.broker.audit.AuditTrail;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShards;
+import org.springframework.cloud.credhub.broker.migration.BindingImportEndpoint;
+import org.springframework.cloud.credhub.broker.migration.BindingImportProperties;
+import org.springframework.cloud.credhub.broker.migration.BindingImporter;
+import org.springframework.cloud.credhub.broker.quota.BindingQuotaService;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.repository.ServiceInstanceRepository;
+import org.springframework.cloud.credhub.broker.service.CredhubServiceInstanceBindingService;
+import org.springframework.cloud.credhub.broker.service.ServicePlans;
+import org.springframework.cloud.credhub.broker.service.UserService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+@EnableConfigurationProperties(BindingImportProperties.class)
+public class BindingImportConfiguration {
+	public static final String IMPORT_TASK_EXECUTOR = "importTaskExecutor";
+	public static final String IMPORT_HASHING_POOL = "importHashingPool";
+
+	/**
+	 * Runs an import and its CredHub writes; one thread more than the write
+	 * concurrency, as the import itself waits on the writes.
+	 */
+	@Bean(IMPORT_TASK_EXECUTOR)
+	public ThreadPoolTaskExecutor importTaskExecutor(BindingImportProperties properties) {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(properties.getConcurrency() + 1);
+		executor.setMaxPoolSize(properties.getConcurrency() + 1);
+		executor.setThreadNamePrefix("import-");
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		return executor;
+	}
+
+	@Bean(name = IMPORT_HASHING_POOL, destroyMethod = "shutdown")
+	public ForkJoinPool importHashingPool(BindingImportProperties properties) {
+		return new ForkJoinPool(properties.getHashingParallelism());
+	}
+
+	@Bean
+	public BindingImporter bindingImporter(ObjectMapper objectMapper,
+			ServiceInstanceRepository instanceRepository,
+			ServiceBindingRepository bindingRepository, UserService userService,
+			CredhubServiceInstanceBindingService bindingService, CredHubShards credHubShards,
+			ServicePlans servicePlans, TransactionTemplate transactionTemplate,
+			BindingQuotaService quotaService, AuditTrail auditTrail,
+			@Qualifier(IMPORT_TASK_EXECUTOR) ThreadPoolTaskExecutor importTaskExecutor,
+			@Qualifier(IMPORT_HASHING_POOL) ForkJoinPool importHashingPool,
+			BindingImportProperties properties) {
+		return new BindingImporter(objectMapper, instanceRepository, bindingRepository,
+				userService, bindingService, credHubShards, servicePlans, transactionTemplate,
+				quotaService, auditTrail, importTaskExecutor, importHashingPool, properties);
+	}
+
+	@Bean
+	public BindingImportEndpoint bindingImportEndpoint(BindingImporter bindingImporter) {
+		return new BindingImportEndpoint(bindingImporter);
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.credhub.broker.quota.BindingQuotaEndpoint;
+import org.springframework.cloud.credhub.broker.quota.BindingQuotaProperties;
+import org.springframework.cloud.credhub.broker.quota.BindingQuotaService;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.service.ServicePlans;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(BindingQuotaProperties.class)
+public class BindingQuotaConfiguration {
+	@Bean
+	public BindingQuotaService bindingQuotaService(BindingQuotaProperties properties,
+			ServiceBindingRepository bindingRepository, ServicePlans servicePlans) {
+		return new BindingQuotaService(properties, bindingRepository, servicePlans);
+	}
+
+	@Bean
+	public BindingQuotaEndpoint bindingQuotaEndpoint(BindingQuotaService quotaService) {
+		return new BindingQuotaEndpoint(quotaService);
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.credhub.broker.certificate.CertificateIssuer;
+import org.springframework.cloud.credhub.broker.certificate.CertificateProperties;
+import org.springframework.cloud.credhub.broker.certificate.KeyPairPool;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.credhub.core.CredHubOperations;
+
+@Configuration
+@EnableConfigurationProperties(CertificateProperties.class)
+public class CertificateConfiguration {
+	@Bean
+	public KeyPairPool keyPairPool(CertificateProperties properties) {
+		return new KeyPairPool(properties.getCurve(), properties.getKeyPoolSize(),
+				properties.isEnabled() ? properties.getKeyPoolThreads() : 0);
+	}
+
+	@Bean
+	public CertificateIssuer certificateIssuer(CertificateProperties properties,
+			CredHubOperations credHubOperations, KeyPairPool keyPairPool) {
+		return new CertificateIssuer(properties, credHubOperations, keyPairPool);
+	}
+}
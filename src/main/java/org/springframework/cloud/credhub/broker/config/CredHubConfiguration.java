@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.credhub.broker.credhub.CredHubHealthIndicator;
+import org.springframework.cloud.credhub.broker.credhub.CredHubHealthProperties;
+import org.springframework.cloud.credhub.broker.credhub.CredHubRebalancer;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShardEndpoint;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShardProperties;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShardRegistrar;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShards;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.service.ServicePlans;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.credhub.core.CredHubOperations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableConfigurationProperties({ CredHubShardProperties.class,
+		CredHubHealthProperties.class })
+public class CredHubConfiguration {
+	public static final String CREDHUB_TASK_EXECUTOR = "credHubTaskExecutor";
+	public static final String CREDHUB_HEALTH_EXECUTOR = "credHubHealthExecutor";
+
+	@Bean(CREDHUB_TASK_EXECUTOR)
+	public ThreadPoolTaskExecutor credHubTaskExecutor(
+			@Value("${broker.credhub.concurrency:16}") int concurrency) {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(concurrency);
+		executor.setMaxPoolSize(concurrency);
+		executor.setThreadNamePrefix("credhub-");
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		return executor;
+	}
+
+	@Bean
+	public static CredHubShardRegistrar credHubShardRegistrar() {
+		return new CredHubShardRegistrar();
+	}
+
+	@Bean
+	public CredHubShards credHubShards(CredHubOperations credHubOperations,
+			CredHubShardProperties properties, BeanFactory beanFactory) {
+		return new CredHubShards(credHubOperations, properties, beanFactory);
+	}
+
+	@Bean
+	public CredHubRebalancer credHubRebalancer(ServiceBindingRepository bindingRepository,
+			CredHubShards credHubShards,
+			@Qualifier(CREDHUB_TASK_EXECUTOR) ThreadPoolTaskExecutor credHubTaskExecutor,
+			ServicePlans servicePlans) {
+		return new CredHubRebalancer(bindingRepository, credHubShards, credHubTaskExecutor,
+				servicePlans);
+	}
+
+	/**
+	 * Probes run on their own threads, one per shard, so a hanging shard or a busy
+	 * {@link #CREDHUB_TASK_EXECUTOR} cannot delay them or be delayed by them.
+	 */
+	@Bean(CREDHUB_HEALTH_EXECUTOR)
+	@ConditionalOnProperty(name = "broker.credhub.health.enabled", matchIfMissing = true)
+	public ThreadPoolTaskExecutor credHubHealthExecutor(CredHubShards credHubShards) {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(credHubShards.names().size());
+		executor.setMaxPoolSize(credHubShards.names().size());
+		executor.setThreadNamePrefix("credhub-health-");
+		executor.setDaemon(true);
+		return executor;
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "broker.credhub.health.enabled", matchIfMissing = true)
+	public CredHubHealthIndicator credHubHealthIndicator(CredHubShards credHubShards,
+			@Qualifier(CREDHUB_HEALTH_EXECUTOR) ThreadPoolTaskExecutor credHubHealthExecutor,
+			CredHubHealthProperties properties) {
+		return new CredHubHealthIndicator(credHubShards, credHubHealthExecutor,
+				properties);
+	}
+
+	@Bean
+	public CredHubShardEndpoint credHubShardEndpoint(CredHubShards credHubShards,
+			CredHubRebalancer credHubRebalancer, ServiceBindingRepository bindingRepository) {
+		return new CredHubShardEndpoint(credHubShards, credHubRebalancer, bindingRepository);
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.cloud.credhub.broker.datasource.ReplicaDataSourceProperties;
+import org.springframework.cloud.credhub.broker.datasource.ReplicaRoutingContext;
+import org.springframework.cloud.credhub.broker.datasource.ReplicaRoutingDataSource;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.StringUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Routes reads to replicas when {@code broker.datasource.replicas} are configured.
+ * Connections are fetched lazily so the routing decision is taken at the first
+ * statement, once the transaction's read-only flag is known.
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+@ConditionalOnProperty("broker.datasource.replicas[0].url")
+public class DataSourceRoutingConfiguration {
+	private final ReplicaDataSourceProperties replicaProperties;
+
+	public DataSourceRoutingConfiguration(ReplicaDataSourceProperties replicaProperties) {
+		this.replicaProperties = replicaProperties;
+	}
+
+	/**
+	 * The primary pool, bound to {@code spring.datasource.hikari.*} like the one Spring
+	 * Boot creates when no replicas are configured.
+	 */
+	@Bean
+	@ConfigurationProperties(prefix = "spring.datasource.hikari")
+	public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+		HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+				.type(HikariDataSource.class).build();
+		if (StringUtils.hasText(dataSourceProperties.getName())) {
+			dataSource.setPoolName(dataSourceProperties.getName());
+		}
+		return dataSource;
+	}
+
+	@Bean
+	public ReplicaRoutingDataSource replicaRoutingDataSource(
+			DataSourceProperties dataSourceProperties, HikariDataSource primary) {
+		List<DataSource> replicas = replicaProperties.getReplicas().stream()
+				.map(replica -> DataSourceBuilder.create()
+						.driverClassName(dataSourceProperties.determineDriverClassName())
+						.url(replica.getUrl())
+						.username(replica.getUsername())
+						.password(replica.getPassword())
+						.build())
+				.collect(Collectors.toList());
+
+		return new ReplicaRoutingDataSource(primary, replicas,
+				replicaProperties.getLagQuery(), replicaProperties.getMaxLag());
+	}
+
+	@Bean
+	@Primary
+	public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+		return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+	}
+
+	@Bean
+	public ReplicaRoutingContext replicaRoutingContext() {
+		return new ReplicaRoutingContext();
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import java.nio.file.Paths;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.credhub.broker.store.EmbeddedServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.store.EmbeddedServiceInstanceRepository;
+import org.springframework.cloud.credhub.broker.store.EmbeddedStore;
+import org.springframework.cloud.credhub.broker.store.EmbeddedStoreProperties;
+import org.springframework.cloud.credhub.broker.store.EmbeddedUserRepository;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Serves the broker's repositories from the {@link EmbeddedStore} when
+ * {@code broker.store.mode=embedded}. The embedded repositories take precedence over
+ * the JPA ones, which stay available for the remaining tables.
+ */
+@Configuration
+@EnableConfigurationProperties(EmbeddedStoreProperties.class)
+@ConditionalOnProperty(name = "broker.store.mode", havingValue = "embedded")
+public class EmbeddedStoreConfiguration {
+	@Bean(destroyMethod = "close")
+	public EmbeddedStore embeddedStore(EmbeddedStoreProperties properties) {
+		EmbeddedStore store = new EmbeddedStore(Paths.get(properties.getPath()));
+		store.open();
+		return store;
+	}
+
+	@Bean
+	@Primary
+	public EmbeddedServiceInstanceRepository embeddedServiceInstanceRepository(
+			EmbeddedStore embeddedStore) {
+		return new EmbeddedServiceInstanceRepository(embeddedStore);
+	}
+
+	@Bean
+	@Primary
+	public EmbeddedServiceBindingRepository embeddedServiceBindingRepository(
+			EmbeddedStore embeddedStore) {
+		return new EmbeddedServiceBindingRepository(embeddedStore);
+	}
+
+	@Bean
+	@Primary
+	public EmbeddedUserRepository embeddedUserRepository(EmbeddedStore embeddedStore) {
+		return new EmbeddedUserRepository(embeddedStore);
+	}
+}
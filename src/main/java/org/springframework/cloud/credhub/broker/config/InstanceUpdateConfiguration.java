@@ -0,0 +1,61 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.service.CredhubServiceInstanceBindingService;
+import org.springframework.cloud.credhub.broker.update.BindingCredentialPropagator;
+import org.springframework.cloud.credhub.broker.update.InstanceUpdateEndpoint;
+import org.springframework.cloud.credhub.broker.update.InstanceUpdateProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableConfigurationProperties(InstanceUpdateProperties.class)
+public class InstanceUpdateConfiguration {
+	public static final String INSTANCE_UPDATE_TASK_EXECUTOR = "instanceUpdateTaskExecutor";
+
+	@Bean(INSTANCE_UPDATE_TASK_EXECUTOR)
+	public ThreadPoolTaskExecutor instanceUpdateTaskExecutor(
+			InstanceUpdateProperties properties) {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(properties.getConcurrency());
+		executor.setMaxPoolSize(properties.getConcurrency());
+		executor.setThreadNamePrefix("instance-update-");
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		return executor;
+	}
+
+	@Bean
+	public BindingCredentialPropagator bindingCredentialPropagator(
+			ServiceBindingRepository bindingRepository,
+			CredhubServiceInstanceBindingService bindingService,
+			@Qualifier(INSTANCE_UPDATE_TASK_EXECUTOR) ThreadPoolTaskExecutor instanceUpdateTaskExecutor,
+			InstanceUpdateProperties properties) {
+		return new BindingCredentialPropagator(bindingRepository, bindingService,
+				instanceUpdateTaskExecutor, properties);
+	}
+
+	@Bean
+	public InstanceUpdateEndpoint instanceUpdateEndpoint(
+			BindingCredentialPropagator bindingCredentialPropagator) {
+		return new InstanceUpdateEndpoint(bindingCredentialPropagator);
+	}
+}
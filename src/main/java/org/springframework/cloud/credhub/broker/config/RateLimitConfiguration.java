@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.cloud.credhub.broker.ratelimit.RateLimitEndpoint;
+import org.springframework.cloud.credhub.broker.ratelimit.RateLimitFilter;
+import org.springframework.cloud.credhub.broker.ratelimit.RateLimitProperties;
+import org.springframework.cloud.credhub.broker.ratelimit.RateLimiter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+@ConditionalOnProperty(name = "broker.rate-limit.enabled", matchIfMissing = true)
+public class RateLimitConfiguration {
+	@Bean
+	public RateLimiter rateLimiter(RateLimitProperties properties) {
+		return new RateLimiter(properties);
+	}
+
+	@Bean
+	public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimiter rateLimiter) {
+		FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(
+				new RateLimitFilter(rateLimiter));
+		registration.addUrlPatterns("/v2/*");
+		registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+		return registration;
+	}
+
+	@Bean
+	public RateLimitEndpoint rateLimitEndpoint(RateLimiter rateLimiter) {
+		return new RateLimitEndpoint(rateLimiter);
+	}
+}
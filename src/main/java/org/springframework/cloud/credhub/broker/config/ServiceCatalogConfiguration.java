@@ -16,10 +16,15 @@
 
 package org.springframework.cloud.credhub.broker.config;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.UUID;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.credhub.broker.service.ServicePlans;
 import org.springframework.cloud.servicebroker.model.catalog.Catalog;
 import org.springframework.cloud.servicebroker.model.catalog.Plan;
 import org.springframework.cloud.servicebroker.model.catalog.ServiceDefinition;
@@ -28,15 +33,25 @@ import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class ServiceCatalogConfiguration {
+	static final String SERVICE_NAME = "credentialstore";
+
 	@Bean
-	public Catalog catalog() {
-		Plan plan = Plan.builder().id(UUID.randomUUID().toString())
-			.name("standard").description("Credhub based credential store plan").free(true).build();
+	public Catalog catalog(
+			@Value("${broker.certificates.enabled:true}") boolean certificatesEnabled) {
+		List<Plan> plans = new ArrayList<>();
+		plans.add(Plan.builder().id(planId(ServicePlans.STANDARD))
+			.name(ServicePlans.STANDARD).description("Credhub based credential store plan").free(true).build());
+		if (certificatesEnabled) {
+			plans.add(Plan.builder().id(planId(ServicePlans.CERTIFICATE))
+				.name(ServicePlans.CERTIFICATE).description("CA signed mTLS client certificate per binding, stored in Credhub")
+				.free(true).build());
+		}
 
 		ServiceDefinition serviceDefinition = ServiceDefinition.builder()
-			.id(UUID.randomUUID().toString()).name("credentialstore")
+			.id(stableId(SERVICE_NAME)).name(SERVICE_NAME)
 			.description("Credhub based credential store service").bindable(true)
-			.tags("credhub", "secrets", "credentails", "certs").plans(plan)
+			.planUpdateable(true)
+			.tags("credhub", "secrets", "credentails", "certs").plans(plans)
 			.metadata("displayName", "Credstore")
 			.metadata("longDescription", "Credhub based credential store service")
 			.metadata("providerDisplayName", "Credhub Service")
@@ -47,4 +62,21 @@ public class ServiceCatalogConfiguration {
 
 		return Catalog.builder().serviceDefinitions(serviceDefinition).build();
 	}
+
+	@Bean
+	public ServicePlans servicePlans(Catalog catalog) {
+		return new ServicePlans(catalog);
+	}
+
+	static String planId(String planName) {
+		return stableId(SERVICE_NAME + "/" + planName);
+	}
+
+	/**
+	 * Ids derived from names stay the same across restarts and broker nodes, which
+	 * matters as stored instances are resolved to their plan by id.
+	 */
+	private static String stableId(String name) {
+		return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString();
+	}
 }
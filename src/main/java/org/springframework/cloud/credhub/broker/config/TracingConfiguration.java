@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.credhub.broker.tracing.SlowRequestEndpoint;
+import org.springframework.cloud.credhub.broker.tracing.SlowRequestRecorder;
+import org.springframework.cloud.credhub.broker.tracing.TracingAspect;
+import org.springframework.cloud.credhub.broker.tracing.TracingProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tracing emits JFR events through {@code jdk.jfr}, which Java 8 has from 8u262 on. On
+ * older runtimes it stays off.
+ */
+@Configuration
+@EnableConfigurationProperties(TracingProperties.class)
+@ConditionalOnProperty(name = "broker.tracing.enabled", matchIfMissing = true)
+@ConditionalOnClass(name = "jdk.jfr.Event")
+public class TracingConfiguration {
+	@Bean
+	public SlowRequestRecorder slowRequestRecorder(TracingProperties properties) {
+		return new SlowRequestRecorder(properties.getSlowThreshold().toNanos(),
+				properties.getCapacity());
+	}
+
+	@Bean
+	public TracingAspect tracingAspect(SlowRequestRecorder slowRequestRecorder,
+			TracingProperties properties) {
+		return new TracingAspect(slowRequestRecorder, properties.getStatementBudgets());
+	}
+
+	@Bean
+	public SlowRequestEndpoint slowRequestEndpoint(SlowRequestRecorder slowRequestRecorder) {
+		return new SlowRequestEndpoint(slowRequestRecorder);
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import java.util.concurrent.Executor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.cloud.credhub.broker.certificate.CertificateIssuer;
+import org.springframework.cloud.credhub.broker.certificate.CertificateProperties;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShards;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.repository.ServiceInstanceRepository;
+import org.springframework.cloud.credhub.broker.repository.UserRepository;
+import org.springframework.cloud.credhub.broker.service.UserService;
+import org.springframework.cloud.credhub.broker.warmup.BrokerWarmup;
+import org.springframework.cloud.credhub.broker.warmup.WarmupGateFilter;
+import org.springframework.cloud.credhub.broker.warmup.WarmupHealthIndicator;
+import org.springframework.cloud.credhub.broker.warmup.WarmupProperties;
+import org.springframework.cloud.servicebroker.model.catalog.Catalog;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(WarmupProperties.class)
+@ConditionalOnProperty(name = "broker.warmup.enabled", matchIfMissing = true)
+public class WarmupConfiguration {
+	@Bean
+	public BrokerWarmup brokerWarmup(WarmupProperties properties,
+			ServiceInstanceRepository instanceRepository,
+			ServiceBindingRepository bindingRepository, UserRepository userRepository,
+			UserService userService, CredHubShards credHubShards,
+			@Qualifier(CredHubConfiguration.CREDHUB_TASK_EXECUTOR) Executor credHubExecutor,
+			Catalog catalog, ObjectMapper objectMapper, CertificateIssuer certificateIssuer,
+			CertificateProperties certificateProperties) {
+		return new BrokerWarmup(properties, instanceRepository, bindingRepository,
+				userRepository, userService, credHubShards, credHubExecutor, catalog,
+				objectMapper, certificateIssuer, certificateProperties.isEnabled());
+	}
+
+	@Bean
+	public WarmupHealthIndicator warmupHealthIndicator(BrokerWarmup warmup) {
+		return new WarmupHealthIndicator(warmup);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "broker.warmup.gate-requests", matchIfMissing = true)
+	public FilterRegistrationBean<WarmupGateFilter> warmupGateFilter(BrokerWarmup warmup) {
+		FilterRegistrationBean<WarmupGateFilter> registration = new FilterRegistrationBean<>(
+				new WarmupGateFilter(warmup));
+		registration.addUrlPatterns("/v2/*");
+		registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+		return registration;
+	}
+}
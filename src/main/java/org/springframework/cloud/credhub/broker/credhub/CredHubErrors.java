@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.credhub;
+
+import org.springframework.credhub.core.CredHubException;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Classifies the errors CredHub returns. {@link CredHubException} only carries the
+ * response status in its message, e.g. {@code Error calling CredHub: 404: ...}.
+ */
+public final class CredHubErrors {
+	private static final String PREFIX = "Error calling CredHub: ";
+
+	private CredHubErrors() {
+	}
+
+	public static boolean isNotFound(Throwable e) {
+		return e instanceof CredHubException && e.getMessage() != null
+				&& e.getMessage().startsWith(PREFIX + HttpStatus.NOT_FOUND.value());
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.credhub;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Reports CredHub reachability from probes run in the background, so serving a health
+ * check never calls CredHub. Each shard keeps a window of recent probe outcomes: a
+ * shard whose error rate crosses the threshold is {@link #DEGRADED}, one failing
+ * several probes in a row is down.
+ */
+public class CredHubHealthIndicator implements HealthIndicator {
+	public static final Status DEGRADED = new Status("DEGRADED");
+
+	private static final String PROBE_PATH = CredentialNames.instancePath("health-probe");
+
+	private final CredHubShards credHubShards;
+	private final Executor executor;
+	private final CredHubHealthProperties properties;
+	private final Map<String, ShardProbe> probes = new LinkedHashMap<>();
+
+	public CredHubHealthIndicator(CredHubShards credHubShards, Executor executor,
+			CredHubHealthProperties properties) {
+		this.credHubShards = credHubShards;
+		this.executor = executor;
+		this.properties = properties;
+		int window = Math.max(1, Math.min(Long.SIZE, properties.getWindow()));
+		for (String shard : credHubShards.names()) {
+			probes.put(shard, new ShardProbe(window));
+		}
+	}
+
+	@Override
+	public Health health() {
+		Status status = Status.UP;
+		Map<String, Object> shards = new LinkedHashMap<>();
+		for (Map.Entry<String, ShardProbe> entry : probes.entrySet()) {
+			ProbeResult result = entry.getValue().result;
+			status = worse(status, result.status);
+			shards.put(entry.getKey(), result.details());
+		}
+		return Health.status(status).withDetail("shards", shards).build();
+	}
+
+	@Scheduled(fixedDelayString = "${broker.credhub.health.interval:10000}")
+	public void probe() {
+		Map<String, CompletableFuture<Long>> pending = new LinkedHashMap<>();
+		for (Map.Entry<String, ShardProbe> entry : probes.entrySet()) {
+			ShardProbe probe = entry.getValue();
+			// a shard whose previous probe still hangs is not probed again
+			if (probe.inFlight.compareAndSet(false, true)) {
+				pending.put(entry.getKey(), CompletableFuture.supplyAsync(() -> {
+					try {
+						long start = System.nanoTime();
+						credHubShards.operations(entry.getKey()).findByPath(PROBE_PATH);
+						return System.nanoTime() - start;
+					}
+					finally {
+						probe.inFlight.set(false);
+					}
+				}, executor));
+			}
+			else {
+				probe.record(false, -1, "previous probe still running");
+			}
+		}
+
+		long deadline = System.nanoTime() + properties.getTimeout().toNanos();
+		for (Map.Entry<String, CompletableFuture<Long>> entry : pending.entrySet()) {
+			ShardProbe probe = probes.get(entry.getKey());
+			try {
+				long latency = entry.getValue().get(
+						Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				probe.record(true, latency, null);
+			}
+			catch (TimeoutException e) {
+				probe.record(false, -1, "timed out after "
+						+ properties.getTimeout().toMillis() + " ms");
+			}
+			catch (ExecutionException e) {
+				probe.record(false, -1, String.valueOf(e.getCause().getMessage()));
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private static Status worse(Status current, Status candidate) {
+		return rank(candidate) > rank(current) ? candidate : current;
+	}
+
+	private static int rank(Status status) {
+		if (Status.DOWN.equals(status)) {
+			return 3;
+		}
+		if (DEGRADED.equals(status)) {
+			return 2;
+		}
+		return Status.UNKNOWN.equals(status) ? 1 : 0;
+	}
+
+	/**
+	 * Probe history of one shard. Only the scheduler thread records outcomes; health
+	 * checks read the immutable {@link ProbeResult} it publishes.
+	 */
+	private class ShardProbe {
+		private final int window;
+		private final AtomicBoolean inFlight = new AtomicBoolean();
+		private long outcomes;
+		private int recorded;
+		private int consecutiveFailures;
+		private volatile ProbeResult result = ProbeResult.UNKNOWN;
+
+		ShardProbe(int window) {
+			this.window = window;
+		}
+
+		void record(boolean success, long latencyNanos, String error) {
+			long mask = window == Long.SIZE ? -1L : (1L << window) - 1;
+			outcomes = ((outcomes << 1) | (success ? 0 : 1)) & mask;
+			recorded = Math.min(window, recorded + 1);
+			consecutiveFailures = success ? 0 : consecutiveFailures + 1;
+
+			double errorRate = Long.bitCount(outcomes) / (double) recorded;
+			Status status;
+			if (consecutiveFailures >= properties.getDownAfter()) {
+				status = Status.DOWN;
+			}
+			else if (errorRate >= properties.getDegradedErrorRate()) {
+				status = DEGRADED;
+			}
+			else {
+				status = Status.UP;
+			}
+			result = new ProbeResult(status, Instant.now(), latencyNanos, errorRate,
+					error);
+		}
+	}
+
+	private static class ProbeResult {
+		static final ProbeResult UNKNOWN = new ProbeResult(Status.UNKNOWN, null, -1, 0,
+				null);
+
+		private final Status status;
+		private final Instant checkedAt;
+		private final long latencyNanos;
+		private final double errorRate;
+		private final String error;
+
+		ProbeResult(Status status, Instant checkedAt, long latencyNanos, double errorRate,
+				String error) {
+			this.status = status;
+			this.checkedAt = checkedAt;
+			this.latencyNanos = latencyNanos;
+			this.errorRate = errorRate;
+			this.error = error;
+		}
+
+		Map<String, Object> details() {
+			Map<String, Object> details = new LinkedHashMap<>();
+			details.put("status", status.getCode());
+			if (checkedAt != null) {
+				details.put("checkedAt", checkedAt.toString());
+				details.put("ageMillis", Instant.now().toEpochMilli() - checkedAt.toEpochMilli());
+			}
+			if (latencyNanos >= 0) {
+				details.put("latencyMillis", TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+			}
+			details.put("errorRate", errorRate);
+			if (error != null) {
+				details.put("error", error);
+			}
+			return details;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.credhub;
+
+import java.time.Duration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("broker.credhub.health")
+@Getter
+@Setter
+public class CredHubHealthProperties {
+	private boolean enabled = true;
+
+	/**
+	 * Milliseconds between background probes of every shard.
+	 */
+	private long interval = 10000;
+
+	/**
+	 * A probe not answered within this time counts as failed.
+	 */
+	private Duration timeout = Duration.ofSeconds(2);
+
+	/**
+	 * Number of most recent probes the error rate is computed over, at most 64.
+	 */
+	private int window = 20;
+
+	/**
+	 * Error rate at or above which a shard is reported as degraded.
+	 */
+	private double degradedErrorRate = 0.2;
+
+	/**
+	 * Consecutive failed probes after which a shard is reported as down.
+	 */
+	private int downAfter = 3;
+}
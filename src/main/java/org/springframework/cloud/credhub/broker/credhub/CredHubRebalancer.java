@@ -0,0 +1,146 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.credhub;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.springframework.cloud.credhub.broker.repository.BindingPlacement;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.service.ServicePlans;
+import org.springframework.credhub.core.CredHubOperations;
+import org.springframework.credhub.support.CredentialDetails;
+import org.springframework.credhub.support.ServiceInstanceCredentialName;
+import org.springframework.credhub.support.certificate.CertificateCredential;
+import org.springframework.credhub.support.certificate.CertificateCredentialRequest;
+import org.springframework.credhub.support.json.JsonCredential;
+import org.springframework.credhub.support.json.JsonCredentialRequest;
+import org.springframework.credhub.support.permissions.ActorType;
+import org.springframework.credhub.support.permissions.CredentialPermission;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+/**
+ * Moves binding credentials whose recorded shard is no longer the one the hash ring
+ * assigns to their service instance, typically after shards were added. Each move
+ * writes the credential to its new shard, records the new shard on the binding and only
+ * then deletes the old copy, so a binding can always be resolved.
+ */
+public class CredHubRebalancer {
+	private static final int PAGE_SIZE = 500;
+	private static final int MAX_REPORTED_FAILURES = 100;
+
+	private final ServiceBindingRepository bindingRepository;
+	private final CredHubShards shards;
+	private final Executor executor;
+	private final ServicePlans servicePlans;
+
+	public CredHubRebalancer(ServiceBindingRepository bindingRepository,
+			CredHubShards shards, Executor executor, ServicePlans servicePlans) {
+		this.bindingRepository = bindingRepository;
+		this.shards = shards;
+		this.executor = executor;
+		this.servicePlans = servicePlans;
+	}
+
+	public Map<String, Object> rebalance() {
+		AtomicInteger moved = new AtomicInteger();
+		ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+		int examined = 0;
+
+		Page<BindingPlacement> page;
+		int pageNumber = 0;
+		do {
+			page = bindingRepository.findPlacements(PageRequest.of(pageNumber++, PAGE_SIZE));
+			List<CompletableFuture<Void>> moves = new ArrayList<>();
+			for (BindingPlacement placement : page) {
+				examined++;
+				String target = shards.shardFor(placement.getInstanceId());
+				String source = placement.getCredhubShard() != null
+						? placement.getCredhubShard() : CredHubShards.DEFAULT_SHARD;
+				if (!target.equals(source)) {
+					moves.add(CompletableFuture
+							.runAsync(() -> move(placement, source, target), executor)
+							.handle((result, e) -> {
+								if (e == null) {
+									moved.incrementAndGet();
+								}
+								else {
+									failures.add(placement.getBindingId() + ": " + e.getMessage());
+								}
+								return null;
+							}));
+				}
+			}
+			CompletableFuture.allOf(moves.toArray(new CompletableFuture[0])).join();
+		}
+		while (page.hasNext());
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("examined", examined);
+		result.put("moved", moved.get());
+		result.put("failed", failures.size());
+		result.put("failures", failures.stream().limit(MAX_REPORTED_FAILURES).toArray());
+		return result;
+	}
+
+	private void move(BindingPlacement placement, String source, String target) {
+		ServiceInstanceCredentialName name = CredentialNames.forBinding(
+				placement.getInstanceId(), placement.getCredentialPlanId(),
+				placement.getBindingId());
+		CredHubOperations from = shards.operations(source);
+		CredHubOperations to = shards.operations(target);
+
+		// the broker's own access is granted by the write, only app grants are copied
+		List<CredentialPermission> permissions = from.getPermissions(name).stream()
+				.filter(permission -> permission.getActor().getAuthType() == ActorType.APP)
+				.collect(Collectors.toList());
+
+		if (servicePlans.isCertificatePlan(placement.getPlanId())) {
+			CredentialDetails<CertificateCredential> credential = from.getByName(name,
+					CertificateCredential.class);
+			CertificateCredentialRequest.CertificateCredentialRequestBuilder request = CertificateCredentialRequest
+					.builder()
+					.overwrite(true)
+					.name(name)
+					.value(credential.getValue());
+			permissions.forEach(request::permission);
+			to.write(request.build());
+		}
+		else {
+			CredentialDetails<JsonCredential> credential = from.getByName(name,
+					JsonCredential.class);
+			JsonCredentialRequest.JsonCredentialRequestBuilder request = JsonCredentialRequest
+					.builder()
+					.overwrite(true)
+					.name(name)
+					.value(credential.getValue());
+			permissions.forEach(request::permission);
+			to.write(request.build());
+		}
+
+		bindingRepository.updateCredhubShard(placement.getBindingId(), target);
+		from.deleteByName(name);
+	}
+}
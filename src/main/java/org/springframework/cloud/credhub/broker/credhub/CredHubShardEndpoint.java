@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.credhub;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+
+@Endpoint(id = "credhubshards")
+public class CredHubShardEndpoint {
+	private final CredHubShards shards;
+	private final CredHubRebalancer rebalancer;
+	private final ServiceBindingRepository bindingRepository;
+
+	public CredHubShardEndpoint(CredHubShards shards, CredHubRebalancer rebalancer,
+			ServiceBindingRepository bindingRepository) {
+		this.shards = shards;
+		this.rebalancer = rebalancer;
+		this.bindingRepository = bindingRepository;
+	}
+
+	@ReadOperation
+	public Map<String, Long> bindingsPerShard() {
+		Map<String, Long> bindings = new LinkedHashMap<>();
+		shards.names().forEach(shard -> bindings.put(shard, 0L));
+		for (Object[] row : bindingRepository.countByCredhubShard()) {
+			String shard = row[0] != null ? (String) row[0] : CredHubShards.DEFAULT_SHARD;
+			bindings.merge(shard, (Long) row[1], Long::sum);
+		}
+		return bindings;
+	}
+
+	@WriteOperation
+	public Map<String, Object> rebalance() {
+		return rebalancer.rebalance();
+	}
+}
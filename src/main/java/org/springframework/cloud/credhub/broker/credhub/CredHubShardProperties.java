@@ -0,0 +1,63 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.credhub;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Additional CredHub endpoints bound from {@code broker.credhub}. The endpoint configured
+ * through {@code spring.credhub} always takes part as the {@value CredHubShards#DEFAULT_SHARD}
+ * shard.
+ */
+@ConfigurationProperties(CredHubShardProperties.PREFIX)
+@Getter
+@Setter
+public class CredHubShardProperties {
+	public static final String PREFIX = "broker.credhub";
+
+	private List<Shard> shards = new ArrayList<>();
+
+	/**
+	 * Points each shard takes on the hash ring. More points spread instances more evenly.
+	 */
+	private int virtualNodes = 128;
+
+	@Getter
+	@Setter
+	public static class Shard {
+		private String name;
+		private String url;
+		private OAuth2 oauth2 = new OAuth2();
+	}
+
+	/**
+	 * Client credentials for a shard. When no client id is given the shard is called
+	 * with mTLS, like the default endpoint.
+	 */
+	@Getter
+	@Setter
+	public static class OAuth2 {
+		private String clientId;
+		private String clientSecret;
+		private String accessTokenUri;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.credhub;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.credhub.configuration.ClientHttpRequestFactoryFactory;
+import org.springframework.credhub.core.CredHubOperations;
+import org.springframework.credhub.core.CredHubTemplate;
+import org.springframework.credhub.core.OAuth2CredHubTemplate;
+import org.springframework.credhub.support.ClientOptions;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.security.oauth2.client.token.grant.client.ClientCredentialsResourceDetails;
+import org.springframework.util.StringUtils;
+
+/**
+ * Registers one {@link CredHubOperations} bean per configured shard. The beans are not
+ * autowire candidates, so the auto-configured default template stays the only one
+ * injected by type; {@link CredHubShards} looks the shards up by name.
+ */
+public class CredHubShardRegistrar implements BeanDefinitionRegistryPostProcessor, EnvironmentAware {
+	private static final String BEAN_NAME_PREFIX = "credHubShard.";
+
+	private CredHubShardProperties properties;
+
+	static String beanName(String shard) {
+		return BEAN_NAME_PREFIX + shard;
+	}
+
+	@Override
+	public void setEnvironment(Environment environment) {
+		this.properties = Binder.get(environment)
+				.bind(CredHubShardProperties.PREFIX, CredHubShardProperties.class)
+				.orElseGet(CredHubShardProperties::new);
+	}
+
+	@Override
+	public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry)
+			throws BeansException {
+		for (CredHubShardProperties.Shard shard : properties.getShards()) {
+			AbstractBeanDefinition definition = BeanDefinitionBuilder
+					.genericBeanDefinition(CredHubOperations.class, () -> createTemplate(shard))
+					.getBeanDefinition();
+			definition.setAutowireCandidate(false);
+			registry.registerBeanDefinition(beanName(shard.getName()), definition);
+		}
+	}
+
+	@Override
+	public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory)
+			throws BeansException {
+	}
+
+	private static CredHubOperations createTemplate(CredHubShardProperties.Shard shard) {
+		ClientHttpRequestFactory requestFactory = ClientHttpRequestFactoryFactory
+				.create(new ClientOptions());
+		CredHubShardProperties.OAuth2 oauth2 = shard.getOauth2();
+		if (!StringUtils.hasText(oauth2.getClientId())) {
+			return new CredHubTemplate(shard.getUrl(), requestFactory);
+		}
+
+		ClientCredentialsResourceDetails resource = new ClientCredentialsResourceDetails();
+		resource.setClientId(oauth2.getClientId());
+		resource.setClientSecret(oauth2.getClientSecret());
+		resource.setAccessTokenUri(oauth2.getAccessTokenUri());
+		return new OAuth2CredHubTemplate(resource, shard.getUrl(), requestFactory);
+	}
+}
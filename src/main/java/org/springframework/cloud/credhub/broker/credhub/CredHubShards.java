@@ -0,0 +1,98 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.credhub;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.credhub.core.CredHubOperations;
+
+/**
+ * The CredHub endpoints bindings are spread over. Service instances are placed on a
+ * consistent hash ring so adding a shard only moves the instances that land on it.
+ */
+public class CredHubShards {
+	public static final String DEFAULT_SHARD = "default";
+
+	private final Map<String, CredHubOperations> shards = new LinkedHashMap<>();
+	private final TreeMap<Long, String> ring = new TreeMap<>();
+
+	public CredHubShards(CredHubOperations defaultOperations,
+			CredHubShardProperties properties, BeanFactory beanFactory) {
+		shards.put(DEFAULT_SHARD, defaultOperations);
+		for (CredHubShardProperties.Shard shard : properties.getShards()) {
+			if (shards.containsKey(shard.getName())) {
+				throw new IllegalArgumentException(
+						"Duplicate CredHub shard name " + shard.getName());
+			}
+			shards.put(shard.getName(), beanFactory.getBean(
+					CredHubShardRegistrar.beanName(shard.getName()), CredHubOperations.class));
+		}
+
+		for (String shard : shards.keySet()) {
+			for (int i = 0; i < properties.getVirtualNodes(); i++) {
+				ring.put(hash(shard + "#" + i), shard);
+			}
+		}
+	}
+
+	/**
+	 * The shard new bindings of the given service instance are placed on.
+	 */
+	public String shardFor(String instanceId) {
+		Map.Entry<Long, String> entry = ring.ceilingEntry(hash(instanceId));
+		return (entry != null ? entry : ring.firstEntry()).getValue();
+	}
+
+	/**
+	 * The operations of a shard. Bindings created before sharding have no shard
+	 * recorded and live on the default one.
+	 */
+	public CredHubOperations operations(String shard) {
+		CredHubOperations operations = shards.get(shard != null ? shard : DEFAULT_SHARD);
+		if (operations == null) {
+			throw new IllegalStateException("Unknown CredHub shard " + shard);
+		}
+		return operations;
+	}
+
+	public Set<String> names() {
+		return Collections.unmodifiableSet(shards.keySet());
+	}
+
+	private static long hash(String key) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5")
+					.digest(key.getBytes(StandardCharsets.UTF_8));
+			long hash = 0;
+			for (int i = 0; i < Long.BYTES; i++) {
+				hash = (hash << 8) | (digest[i] & 0xff);
+			}
+			return hash;
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.credhub;
+
+import java.util.Arrays;
+
+import org.springframework.credhub.support.ServiceInstanceCredentialName;
+import org.springframework.credhub.support.SimpleCredentialName;
+
+/**
+ * Names of the CredHub credentials the broker keeps for its bindings.
+ */
+public final class CredentialNames {
+	private CredentialNames() {
+	}
+
+	public static ServiceInstanceCredentialName forBinding(String instanceId, String planId,
+			String bindingId) {
+		return ServiceInstanceCredentialName.builder()
+				.serviceBrokerName(instanceId)
+				.serviceOfferingName(planId)
+				.serviceBindingId(bindingId)
+				.credentialName(bindingId)
+				.build();
+	}
+
+	/**
+	 * A credential referred to by its full name, e.g. {@code /credential-broker/ca}.
+	 */
+	public static SimpleCredentialName of(String name) {
+		return new SimpleCredentialName(Arrays.stream(name.split("/"))
+				.filter(segment -> !segment.isEmpty()).toArray(String[]::new));
+	}
+
+	/**
+	 * The path holding the credentials of every binding of a service instance.
+	 */
+	public static String instancePath(String instanceId) {
+		return "/c/" + instanceId + "/";
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.datasource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("broker.datasource")
+@Getter
+@Setter
+public class ReplicaDataSourceProperties {
+	private List<Replica> replicas = new ArrayList<>();
+
+	/**
+	 * Query returning the replication lag of a replica in seconds. When empty, replicas
+	 * are only checked for connectivity.
+	 */
+	private String lagQuery;
+
+	/**
+	 * Replicas lagging further behind than this stop serving reads until they catch up.
+	 */
+	private Duration maxLag = Duration.ofSeconds(5);
+
+	@Getter
+	@Setter
+	public static class Replica {
+		private String url;
+		private String username;
+		private String password;
+	}
+}
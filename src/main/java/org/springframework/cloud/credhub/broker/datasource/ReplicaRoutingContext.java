@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tracks whether the current thread runs inside a {@link ReadFromReplica} method.
+ */
+@Aspect
+public class ReplicaRoutingContext {
+	private static final ThreadLocal<Boolean> REPLICA_ALLOWED = ThreadLocal
+			.withInitial(() -> Boolean.FALSE);
+
+	@Around("@annotation(org.springframework.cloud.credhub.broker.datasource.ReadFromReplica)")
+	public Object allowReplica(ProceedingJoinPoint joinPoint) throws Throwable {
+		Boolean previous = REPLICA_ALLOWED.get();
+		REPLICA_ALLOWED.set(Boolean.TRUE);
+		try {
+			return joinPoint.proceed();
+		}
+		finally {
+			REPLICA_ALLOWED.set(previous);
+		}
+	}
+
+	/**
+	 * A replica may serve the current connection request only inside a
+	 * {@link ReadFromReplica} method and only while no read-write transaction is active.
+	 */
+	static boolean isReplicaAllowed() {
+		return REPLICA_ALLOWED.get()
+				&& (!TransactionSynchronizationManager.isActualTransactionActive()
+						|| TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.datasource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+
+/**
+ * Sends connection requests made inside {@link ReadFromReplica} methods to a healthy
+ * replica, round robin, and everything else to the primary. A replica that fails to
+ * hand out a connection or falls too far behind is skipped until the next successful
+ * check, and reads fall back to the primary when no replica is usable.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+	private static final Log log = LogFactory.getLog(ReplicaRoutingDataSource.class);
+
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+	private final DataSource primary;
+	private final List<Replica> replicas = new ArrayList<>();
+	private final String lagQuery;
+	private final long maxLagSeconds;
+
+	private final AtomicInteger nextReplica = new AtomicInteger();
+	private final LongAdder primaryFallbacks = new LongAdder();
+
+	public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas,
+			String lagQuery, Duration maxLag) {
+		this.primary = primary;
+		for (int i = 0; i < replicas.size(); i++) {
+			this.replicas.add(new Replica("replica-" + i, replicas.get(i)));
+		}
+		this.lagQuery = lagQuery;
+		this.maxLagSeconds = maxLag.getSeconds();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (ReplicaRoutingContext.isReplicaAllowed()) {
+			Connection connection = replicaConnection();
+			if (connection != null) {
+				return connection;
+			}
+			primaryFallbacks.increment();
+		}
+		return primary.getConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return primary.getConnection(username, password);
+	}
+
+	private Connection replicaConnection() {
+		int size = replicas.size();
+		int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+		for (int i = 0; i < size; i++) {
+			Replica replica = replicas.get((start + i) % size);
+			if (!replica.healthy) {
+				continue;
+			}
+			try {
+				return replica.dataSource.getConnection();
+			}
+			catch (SQLException e) {
+				replica.markDown(e.getMessage());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Re-evaluate every replica's connectivity and replication lag.
+	 */
+	@Scheduled(fixedDelayString = "${broker.datasource.check-interval:10000}")
+	public void checkReplicas() {
+		for (Replica replica : replicas) {
+			try (Connection connection = replica.dataSource.getConnection()) {
+				if (!StringUtils.hasText(lagQuery)) {
+					if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+						replica.markUp();
+					}
+					else {
+						replica.markDown("connection is not valid");
+					}
+					continue;
+				}
+				try (Statement statement = connection.createStatement();
+						ResultSet resultSet = statement.executeQuery(lagQuery)) {
+					long lag = resultSet.next() ? resultSet.getLong(1) : -1;
+					if (lag < 0 || resultSet.wasNull()) {
+						replica.markDown("replication lag is unknown");
+					}
+					else if (lag > maxLagSeconds) {
+						replica.markDown("replication lag of " + lag + "s exceeds " + maxLagSeconds + "s");
+					}
+					else {
+						replica.markUp();
+					}
+				}
+			}
+			catch (SQLException e) {
+				replica.markDown(e.getMessage());
+			}
+		}
+	}
+
+	public long getPrimaryFallbacks() {
+		return primaryFallbacks.sum();
+	}
+
+	private static class Replica {
+		private final String name;
+		private final DataSource dataSource;
+		private volatile boolean healthy = true;
+
+		Replica(String name, DataSource dataSource) {
+			this.name = name;
+			this.dataSource = dataSource;
+		}
+
+		void markUp() {
+			if (!healthy) {
+				log.info("Replica " + name + " is serving reads again");
+			}
+			healthy = true;
+		}
+
+		void markDown(String reason) {
+			if (healthy) {
+				log.warn("Replica " + name + " stopped serving reads: " + reason);
+			}
+			healthy = false;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.migration;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.web.annotation.RestControllerEndpoint;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Starts an NDJSON import through the {@link BindingImporter}. The request body is
+ * copied to a temporary file as it arrives, so files of any size can be posted, and
+ * imported in the background while {@code GET} reports its progress.
+ */
+@RestControllerEndpoint(id = "bindingimports")
+public class BindingImportEndpoint {
+	private final BindingImporter importer;
+
+	public BindingImportEndpoint(BindingImporter importer) {
+		this.importer = importer;
+	}
+
+	@PostMapping
+	public ResponseEntity<Map<String, Object>> importBindings(InputStream body,
+			@RequestParam(defaultValue = "0") long skip) {
+		try {
+			return ResponseEntity.accepted().body(importer.start(body, skip).toMap());
+		}
+		catch (IllegalStateException e) {
+			return ResponseEntity.status(HttpStatus.CONFLICT)
+					.body(Collections.singletonMap("error", e.getMessage()));
+		}
+	}
+
+	@GetMapping
+	public ResponseEntity<Map<String, Object>> lastImport() {
+		ImportReport report = importer.lastReport();
+		return report != null ? ResponseEntity.ok(report.toMap())
+				: ResponseEntity.notFound().build();
+	}
+}
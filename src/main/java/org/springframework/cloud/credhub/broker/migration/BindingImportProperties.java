@@ -0,0 +1,43 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.migration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("broker.import")
+@Getter
+@Setter
+public class BindingImportProperties {
+	/**
+	 * Lines read, and rows inserted, per batch.
+	 */
+	private int batchSize = 500;
+
+	/**
+	 * CredHub writes in flight during an import.
+	 */
+	private int concurrency = 16;
+
+	/**
+	 * Threads encoding passwords during an import.
+	 */
+	private int hashingParallelism = Runtime.getRuntime().availableProcessors();
+
+	private int maxReportedFailures = 100;
+}
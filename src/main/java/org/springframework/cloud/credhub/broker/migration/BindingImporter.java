@@ -0,0 +1,503 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.migration;
+
+import static org.springframework.cloud.credhub.broker.audit.AuditAction.CREATE;
+import static org.springframework.cloud.credhub.broker.audit.AuditResource.SERVICE_BINDING;
+import static org.springframework.cloud.credhub.broker.audit.AuditResource.SERVICE_INSTANCE;
+import static org.springframework.cloud.credhub.broker.audit.AuditResource.USER;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.credhub.broker.audit.AuditTrail;
+import org.springframework.cloud.credhub.broker.config.SecurityAuthorities;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShards;
+import org.springframework.cloud.credhub.broker.model.ServiceBinding;
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.model.User;
+import org.springframework.cloud.credhub.broker.quota.BindingQuotaService;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.repository.ServiceInstanceRepository;
+import org.springframework.cloud.credhub.broker.service.CredhubServiceInstanceBindingService;
+import org.springframework.cloud.credhub.broker.service.ServicePlans;
+import org.springframework.cloud.credhub.broker.service.UserService;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Imports service instances and bindings from another broker out of an NDJSON stream,
+ * one batch of lines at a time. Per batch, passwords are encoded in parallel on a
+ * fork/join pool, CredHub credentials are written with bounded concurrency, and the
+ * rows of the credentials that were written are inserted in one transaction. If that
+ * transaction fails, the rows are inserted one by one and the lines that still fail
+ * are reported.
+ * <p>
+ * Instances and bindings the broker already has are skipped, so an interrupted import
+ * can be repeated, or resumed after its last completed batch.
+ */
+public class BindingImporter {
+	private static final Log log = LogFactory.getLog(BindingImporter.class);
+
+	private final ObjectMapper objectMapper;
+	private final ServiceInstanceRepository instanceRepository;
+	private final ServiceBindingRepository bindingRepository;
+	private final UserService userService;
+	private final CredhubServiceInstanceBindingService bindingService;
+	private final CredHubShards credHubShards;
+	private final ServicePlans servicePlans;
+	private final TransactionTemplate transactionTemplate;
+	private final BindingQuotaService quotaService;
+	private final AuditTrail auditTrail;
+	private final Executor importExecutor;
+	private final ForkJoinPool hashingPool;
+	private final BindingImportProperties properties;
+
+	private final AtomicReference<ImportReport> current = new AtomicReference<>();
+
+	public BindingImporter(ObjectMapper objectMapper,
+			ServiceInstanceRepository instanceRepository,
+			ServiceBindingRepository bindingRepository, UserService userService,
+			CredhubServiceInstanceBindingService bindingService, CredHubShards credHubShards,
+			ServicePlans servicePlans, TransactionTemplate transactionTemplate,
+			BindingQuotaService quotaService, AuditTrail auditTrail, Executor importExecutor,
+			ForkJoinPool hashingPool, BindingImportProperties properties) {
+		this.objectMapper = objectMapper;
+		this.instanceRepository = instanceRepository;
+		this.bindingRepository = bindingRepository;
+		this.userService = userService;
+		this.bindingService = bindingService;
+		this.credHubShards = credHubShards;
+		this.servicePlans = servicePlans;
+		this.transactionTemplate = transactionTemplate;
+		this.quotaService = quotaService;
+		this.auditTrail = auditTrail;
+		this.importExecutor = importExecutor;
+		this.hashingPool = hashingPool;
+		this.properties = properties;
+	}
+
+	/**
+	 * Import the records of a stream on the calling thread.
+	 * @param skip number of leading lines to skip, to resume an interrupted import
+	 * @throws IllegalStateException if another import is running
+	 */
+	public ImportReport run(InputStream in, long skip) {
+		ImportReport report = begin(skip);
+		importAll(in, skip, report);
+		return report;
+	}
+
+	/**
+	 * Copy a stream to a temporary file and import it in the background. The returned
+	 * report, also available from {@link #lastReport()}, tracks its progress.
+	 * @param skip number of leading lines to skip, to resume an interrupted import
+	 * @throws IllegalStateException if another import is running
+	 */
+	public ImportReport start(InputStream in, long skip) {
+		ImportReport report = begin(skip);
+		Path file = null;
+		try {
+			file = Files.createTempFile("binding-import-", ".ndjson");
+			Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+			Path spooled = file;
+			importExecutor.execute(() -> {
+				try {
+					importAll(Files.newInputStream(spooled), skip, report);
+				}
+				catch (IOException e) {
+					log.error("Import failed", e);
+					report.finish(e.getMessage());
+				}
+				finally {
+					delete(spooled);
+				}
+			});
+			return report;
+		}
+		catch (IOException e) {
+			report.finish(e.getMessage());
+			delete(file);
+			throw new UncheckedIOException("Failed to receive the import", e);
+		}
+		catch (TaskRejectedException e) {
+			report.finish(e.getMessage());
+			delete(file);
+			throw e;
+		}
+	}
+
+	/**
+	 * The running or last import, or {@code null} if there was none.
+	 */
+	public ImportReport lastReport() {
+		return current.get();
+	}
+
+	private ImportReport begin(long skip) {
+		ImportReport report = new ImportReport(skip, properties.getMaxReportedFailures());
+		ImportReport previous = current.get();
+		if ((previous != null && previous.isRunning())
+				|| !current.compareAndSet(previous, report)) {
+			throw new IllegalStateException("An import is already running");
+		}
+		return report;
+	}
+
+	private void importAll(InputStream in, long skip, ImportReport report) {
+		String error = null;
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			List<Entry> batch = new ArrayList<>(properties.getBatchSize());
+			long number = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				number++;
+				if (number <= skip || line.trim().isEmpty()) {
+					continue;
+				}
+				report.read(number);
+				Entry entry = parse(number, line, report);
+				if (entry != null) {
+					batch.add(entry);
+				}
+				if (batch.size() == properties.getBatchSize()) {
+					importBatch(batch, number, report);
+					batch.clear();
+				}
+			}
+			importBatch(batch, number, report);
+		}
+		catch (IOException | RuntimeException e) {
+			log.error("Import failed", e);
+			error = e.getMessage();
+		}
+		finally {
+			report.finish(error);
+			// imported bindings are not reserved one by one
+			quotaService.reconcile();
+		}
+
+		log.info("Import finished: " + report.toMap());
+	}
+
+	private static void delete(Path file) {
+		if (file == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(file);
+		}
+		catch (IOException e) {
+			log.warn("Failed to delete " + file, e);
+		}
+	}
+
+	private Entry parse(long number, String line, ImportReport report) {
+		try {
+			ImportRecord record = objectMapper.readValue(line, ImportRecord.class);
+			if (ImportRecord.INSTANCE.equals(record.getType())
+					&& record.getInstanceId() != null) {
+				return new Entry(number, record);
+			}
+			if (ImportRecord.BINDING.equals(record.getType()) && record.getBindingId() != null
+					&& record.getInstanceId() != null) {
+				return new Entry(number, record);
+			}
+			report.failed(number, "Neither an instance nor a binding record");
+		}
+		catch (IOException e) {
+			report.failed(number, "Invalid JSON: " + e.getMessage());
+		}
+		return null;
+	}
+
+	private void importBatch(List<Entry> batch, long lastLine, ImportReport report) {
+		importInstances(batch.stream()
+				.filter(entry -> ImportRecord.INSTANCE.equals(entry.record.getType()))
+				.collect(Collectors.toList()), report);
+		importBindings(batch.stream()
+				.filter(entry -> ImportRecord.BINDING.equals(entry.record.getType()))
+				.collect(Collectors.toList()), report);
+		report.batchDone(lastLine);
+	}
+
+	private void importInstances(List<Entry> entries, ImportReport report) {
+		if (entries.isEmpty()) {
+			return;
+		}
+
+		Set<String> existing = instanceRepository
+				.findAllById(entries.stream().map(entry -> entry.record.getInstanceId())
+						.collect(Collectors.toSet()))
+				.stream().map(ServiceInstance::getInstanceId).collect(Collectors.toSet());
+
+		Set<String> createdIds = new HashSet<>();
+		Map<Entry, ServiceInstance> created = new LinkedHashMap<>();
+		int skipped = 0;
+		for (Entry entry : entries) {
+			ImportRecord record = entry.record;
+			if (existing.contains(record.getInstanceId())
+					|| createdIds.contains(record.getInstanceId())) {
+				skipped++;
+				continue;
+			}
+			String planId = planId(record.getPlan());
+			if (planId == null) {
+				report.failed(entry.line, "Unknown plan " + record.getPlan());
+				continue;
+			}
+			createdIds.add(record.getInstanceId());
+			created.put(entry, new ServiceInstance(record.getInstanceId(),
+					record.getServiceDefinitionId(), planId, record.getParameters()));
+		}
+
+		List<ServiceInstance> inserted = insertInstances(created, report);
+		for (ServiceInstance instance : inserted) {
+			auditTrail.record(CREATE, SERVICE_INSTANCE, instance.getInstanceId(),
+					instance.getInstanceId(), null);
+		}
+		report.instances(inserted.size(), skipped);
+	}
+
+	private List<ServiceInstance> insertInstances(Map<Entry, ServiceInstance> instances,
+			ImportReport report) {
+		try {
+			saveInstances(instances.values());
+			return new ArrayList<>(instances.values());
+		}
+		catch (RuntimeException e) {
+			log.warn("Failed to insert a batch of " + instances.size()
+					+ " service instances, inserting them one by one", e);
+		}
+
+		List<ServiceInstance> inserted = new ArrayList<>();
+		instances.forEach((entry, instance) -> {
+			try {
+				saveInstances(Collections.singletonList(instance));
+				inserted.add(instance);
+			}
+			catch (RuntimeException e) {
+				report.failed(entry.line,
+						"Failed to insert the service instance: " + e.getMessage());
+			}
+		});
+		return inserted;
+	}
+
+	private void saveInstances(Collection<ServiceInstance> instances) {
+		transactionTemplate.execute(status -> instanceRepository.saveAll(instances));
+	}
+
+	private void importBindings(List<Entry> entries, ImportReport report) {
+		if (entries.isEmpty()) {
+			return;
+		}
+
+		Set<String> existing = new HashSet<>(bindingRepository.findExistingBindingIds(
+				entries.stream().map(entry -> entry.record.getBindingId())
+						.collect(Collectors.toSet())));
+		Map<String, ServiceInstance> instances = instanceRepository
+				.findAllById(entries.stream().map(entry -> entry.record.getInstanceId())
+						.collect(Collectors.toSet()))
+				.stream()
+				.collect(Collectors.toMap(ServiceInstance::getInstanceId, Function.identity()));
+
+		List<Entry> pending = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		int skipped = 0;
+		for (Entry entry : entries) {
+			if (existing.contains(entry.record.getBindingId())
+					|| !seen.add(entry.record.getBindingId())) {
+				skipped++;
+			}
+			else if (!instances.containsKey(entry.record.getInstanceId())) {
+				report.failed(entry.line,
+						"Unknown service instance " + entry.record.getInstanceId());
+			}
+			else {
+				pending.add(entry);
+			}
+		}
+
+		// bcrypt is most of the cost of a binding
+		List<Binding> prepared = hashingPool.submit(() -> pending.parallelStream()
+				.map(entry -> prepare(entry, instances.get(entry.record.getInstanceId())))
+				.collect(Collectors.toList())).join();
+
+		List<CompletableFuture<String>> writes = prepared.stream()
+				.map(binding -> CompletableFuture.supplyAsync(
+						() -> bindingService.writeImportedCredential(binding.instance,
+								binding.shard, binding.record().getBindingId(),
+								binding.record().getAppGuid(), binding.user),
+						importExecutor))
+				.collect(Collectors.toList());
+		List<Binding> written = new ArrayList<>();
+		for (int i = 0; i < prepared.size(); i++) {
+			Binding binding = prepared.get(i);
+			try {
+				binding.credhubRef = writes.get(i).join();
+				written.add(binding);
+			}
+			catch (CompletionException e) {
+				report.failed(binding.entry.line,
+						"Failed to write the CredHub credential: " + e.getCause().getMessage());
+			}
+		}
+
+		List<Binding> inserted = insertBindings(written, report);
+		for (Binding binding : inserted) {
+			String bindingId = binding.record().getBindingId();
+			String instanceId = binding.instance.getInstanceId();
+			if (binding.user != null) {
+				auditTrail.record(CREATE, USER, bindingId, instanceId, null);
+			}
+			auditTrail.record(CREATE, SERVICE_BINDING, bindingId, instanceId, null);
+		}
+		report.bindings(inserted.size(), skipped);
+	}
+
+	private List<Binding> insertBindings(List<Binding> bindings, ImportReport report) {
+		try {
+			saveBindings(bindings);
+			return bindings;
+		}
+		catch (RuntimeException e) {
+			log.warn("Failed to insert a batch of " + bindings.size()
+					+ " bindings, inserting them one by one", e);
+		}
+
+		List<Binding> inserted = new ArrayList<>();
+		for (Binding binding : bindings) {
+			try {
+				saveBindings(Collections.singletonList(binding));
+				inserted.add(binding);
+			}
+			catch (RuntimeException e) {
+				report.failed(binding.entry.line,
+						"Failed to insert the binding: " + e.getMessage());
+			}
+		}
+		return inserted;
+	}
+
+	private void saveBindings(List<Binding> bindings) {
+		transactionTemplate.execute(status -> {
+			userService.saveUsers(bindings.stream().map(Binding::userRow)
+					.filter(user -> user != null).collect(Collectors.toList()));
+			return bindingRepository.saveAll(bindings.stream()
+					.map(Binding::toServiceBinding).collect(Collectors.toList()));
+		});
+	}
+
+	private Binding prepare(Entry entry, ServiceInstance instance) {
+		String shard = credHubShards.shardFor(instance.getInstanceId());
+		if (servicePlans.isCertificatePlan(instance.getPlanId())) {
+			return new Binding(entry, instance, shard, null, null);
+		}
+
+		String bindingId = entry.record.getBindingId();
+		String password = entry.record.getPassword() != null ? entry.record.getPassword()
+				: userService.newPassword();
+		String[] authorities = { SecurityAuthorities.FULL_ACCESS.toString(),
+				instance.getInstanceId() };
+		return new Binding(entry, instance, shard,
+				new User(bindingId, password, authorities),
+				userService.encodedUser(bindingId, password, authorities));
+	}
+
+	private String planId(String plan) {
+		if (plan == null) {
+			return null;
+		}
+		return servicePlans.contains(plan) ? plan : servicePlans.idOf(plan);
+	}
+
+	private static class Entry {
+		private final long line;
+		private final ImportRecord record;
+
+		Entry(long line, ImportRecord record) {
+			this.line = line;
+			this.record = record;
+		}
+	}
+
+	private static class Binding {
+		private final Entry entry;
+		private final ServiceInstance instance;
+		private final String shard;
+		private final User user;
+		private final User encodedUser;
+		private String credhubRef;
+
+		Binding(Entry entry, ServiceInstance instance, String shard, User user,
+				User encodedUser) {
+			this.entry = entry;
+			this.instance = instance;
+			this.shard = shard;
+			this.user = user;
+			this.encodedUser = encodedUser;
+		}
+
+		ImportRecord record() {
+			return entry.record;
+		}
+
+		/**
+		 * A new row per insert attempt, as a failed attempt leaves its id assigned.
+		 */
+		User userRow() {
+			return encodedUser != null ? new User(encodedUser.getUsername(),
+					encodedUser.getPassword(),
+					encodedUser.getAuthorities().toArray(new String[0])) : null;
+		}
+
+		ServiceBinding toServiceBinding() {
+			Map<String, Object> credentials = new HashMap<>();
+			credentials.put("credhub-ref", credhubRef);
+			return new ServiceBinding(record().getBindingId(), instance,
+					record().getAppGuid(), shard, record().getParameters(), credentials);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.migration;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One line of an import file: a service instance, or a binding of an instance listed
+ * earlier in the file or already known to the broker.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Getter
+@Setter
+class ImportRecord {
+	static final String INSTANCE = "instance";
+	static final String BINDING = "binding";
+
+	private String type;
+
+	private String instanceId;
+
+	private String serviceDefinitionId;
+
+	/**
+	 * Plan id or name.
+	 */
+	private String plan;
+
+	private String bindingId;
+
+	private String appGuid;
+
+	/**
+	 * Password the binding had in the legacy broker; a new one is generated if absent.
+	 */
+	private String password;
+
+	private Map<String, Object> parameters;
+}
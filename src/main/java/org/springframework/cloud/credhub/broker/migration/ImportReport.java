@@ -0,0 +1,112 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.migration;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of an import. {@code resumeAfter} is the last line of the last batch that
+ * was fully processed; passing it as {@code skip} resumes an interrupted import.
+ */
+public class ImportReport {
+	private final int maxReportedFailures;
+	private final long skipped;
+	private final Instant started = Instant.now();
+	private final AtomicLong lines = new AtomicLong();
+	private final AtomicLong resumeAfter;
+	private final AtomicLong instancesImported = new AtomicLong();
+	private final AtomicLong instancesExisting = new AtomicLong();
+	private final AtomicLong bindingsImported = new AtomicLong();
+	private final AtomicLong bindingsExisting = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicInteger reportedFailures = new AtomicInteger();
+	private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+	private volatile Instant finished;
+	private volatile String error;
+
+	ImportReport(long skip, int maxReportedFailures) {
+		this.skipped = skip;
+		this.resumeAfter = new AtomicLong(skip);
+		this.maxReportedFailures = maxReportedFailures;
+	}
+
+	void read(long line) {
+		lines.set(line);
+	}
+
+	void batchDone(long lastLine) {
+		resumeAfter.set(lastLine);
+	}
+
+	void instances(long imported, long existing) {
+		instancesImported.addAndGet(imported);
+		instancesExisting.addAndGet(existing);
+	}
+
+	void bindings(long imported, long existing) {
+		bindingsImported.addAndGet(imported);
+		bindingsExisting.addAndGet(existing);
+	}
+
+	void failed(long line, String reason) {
+		failed.incrementAndGet();
+		if (reportedFailures.incrementAndGet() <= maxReportedFailures) {
+			failures.add("line " + line + ": " + reason);
+		}
+	}
+
+	void finish(String error) {
+		this.error = error;
+		this.finished = Instant.now();
+	}
+
+	public boolean isRunning() {
+		return finished == null;
+	}
+
+	public Map<String, Object> toMap() {
+		long elapsed = Duration.between(started, finished != null ? finished : Instant.now())
+				.toMillis();
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("running", isRunning());
+		report.put("started", started.toString());
+		report.put("elapsedMs", elapsed);
+		report.put("skipped", skipped);
+		report.put("lines", lines.get());
+		report.put("resumeAfter", resumeAfter.get());
+		report.put("instancesImported", instancesImported.get());
+		report.put("instancesExisting", instancesExisting.get());
+		report.put("bindingsImported", bindingsImported.get());
+		report.put("bindingsExisting", bindingsExisting.get());
+		report.put("bindingsPerSecond",
+				elapsed > 0 ? bindingsImported.get() * 1000 / elapsed : 0);
+		report.put("failed", failed.get());
+		report.put("failures", failures.toArray());
+		if (error != null) {
+			report.put("error", error);
+		}
+		return report;
+	}
+}
@@ -20,18 +20,32 @@ import java.util.Map;
 
 import javax.persistence.*;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
 
 @Entity
-@Table(name = "service_bindings")
+@Table(name = "service_bindings", indexes = {
+		@Index(name = "idx_service_bindings_instance_id", columnList = "instance_id"),
+		@Index(name = "idx_service_bindings_app_guid", columnList = "app_guid, instance_id") })
 @Getter
 @NoArgsConstructor
-public class ServiceBinding {
+public class ServiceBinding implements Persistable<String> {
 	@Id
 	@Column(length = 50)
 	private String bindingId;
 
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "instance_id")
+	private ServiceInstance serviceInstance;
+
+	@Column(name = "app_guid", length = 50)
+	private String appGuid;
+
+	@Column(length = 50)
+	private String credhubShard;
+
 	@ElementCollection
 	@MapKeyColumn(name = "parameter_name", length = 100)
 	@Column(name = "parameter_value")
@@ -46,11 +60,34 @@ public class ServiceBinding {
 	@Convert(converter = ObjectToStringConverter.class, attributeName = "value")
 	private  Map<String, Object> credentials;
 
-	public ServiceBinding(String bindingId, Map<String, Object> parameters,
+	@Transient
+	@Getter(AccessLevel.NONE)
+	private boolean persisted;
+
+	public ServiceBinding(String bindingId, ServiceInstance serviceInstance,
+			String appGuid, String credhubShard, Map<String, Object> parameters,
 			Map<String, Object> credentials) {
 		this.bindingId = bindingId;
+		this.serviceInstance = serviceInstance;
+		this.appGuid = appGuid;
+		this.credhubShard = credhubShard;
 		this.parameters = parameters;
 		this.credentials = credentials;
 	}
 
+	@Override
+	public String getId() {
+		return bindingId;
+	}
+
+	@Override
+	public boolean isNew() {
+		return !persisted;
+	}
+
+	@PostLoad
+	@PostPersist
+	void markPersisted() {
+		persisted = true;
+	}
 }
@@ -16,18 +16,21 @@
 
 package org.springframework.cloud.credhub.broker.model;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.persistence.*;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
 
 @Entity
 @Table(name = "service_instances")
 @Getter
 @NoArgsConstructor
-public class ServiceInstance {
+public class ServiceInstance implements Persistable<String> {
 	@Id
 	@Column(length = 50)
 	private String instanceId;
@@ -38,6 +41,10 @@ public class ServiceInstance {
 	@Column(length = 50)
 	private String planId;
 
+	@Column(length = 50)
+	@Getter(AccessLevel.NONE)
+	private String credentialPlanId;
+
 	@ElementCollection
 	@MapKeyColumn(name = "parameter_name", length = 100)
 	@Column(name = "parameter_value")
@@ -45,11 +52,71 @@ public class ServiceInstance {
 	@Convert(converter = ObjectToStringConverter.class, attributeName = "value")
 	private Map<String, Object> parameters;
 
+	@Transient
+	@Getter(AccessLevel.NONE)
+	private boolean persisted;
+
 	public ServiceInstance(String instanceId, String serviceDefinitionId, String planId,
 			Map<String, Object> parameters) {
+		this(instanceId, serviceDefinitionId, planId, planId, parameters);
+	}
+
+	public ServiceInstance(String instanceId, String serviceDefinitionId, String planId,
+			String credentialPlanId, Map<String, Object> parameters) {
 		this.instanceId = instanceId;
 		this.serviceDefinitionId = serviceDefinitionId;
 		this.planId = planId;
+		this.credentialPlanId = credentialPlanId;
 		this.parameters = parameters;
 	}
+
+	/**
+	 * The plan id used in the CredHub credential names of the instance's bindings. It
+	 * stays the plan the instance was provisioned with, so the {@code credhub-ref}s
+	 * applications already hold keep resolving after a plan change.
+	 */
+	public String getCredentialPlanId() {
+		return credentialPlanId != null ? credentialPlanId : planId;
+	}
+
+	/**
+	 * A copy of the instance moved to a plan, with updated parameters merged in. The
+	 * instance itself is left as it is, since it may be shared with concurrent readers.
+	 */
+	public ServiceInstance withPlan(String planId, Map<String, Object> parameters) {
+		Map<String, Object> merged = null;
+		if (this.parameters != null || (parameters != null && !parameters.isEmpty())) {
+			merged = new LinkedHashMap<>();
+			if (this.parameters != null) {
+				merged.putAll(this.parameters);
+			}
+			if (parameters != null) {
+				merged.putAll(parameters);
+			}
+		}
+		ServiceInstance updated = new ServiceInstance(instanceId, serviceDefinitionId,
+				planId, getCredentialPlanId(), merged);
+		updated.persisted = persisted;
+		return updated;
+	}
+
+	@Override
+	public String getId() {
+		return instanceId;
+	}
+
+	/**
+	 * Lets {@code save} persist new entities straight away instead of merging, which
+	 * would first select the row by its assigned id.
+	 */
+	@Override
+	public boolean isNew() {
+		return !persisted;
+	}
+
+	@PostLoad
+	@PostPersist
+	void markPersisted() {
+		persisted = true;
+	}
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.quota;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Reports quota rejections as 422 so platforms surface the description to the user
+ * instead of treating the bind as a broker failure.
+ */
+@ControllerAdvice
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class BindingQuotaExceptionHandler {
+	@ExceptionHandler(BindingQuotaExceededException.class)
+	public ResponseEntity<Map<String, String>> handleQuotaExceeded(
+			BindingQuotaExceededException e) {
+		return new ResponseEntity<>(Collections.singletonMap("description", e.getMessage()),
+				HttpStatus.UNPROCESSABLE_ENTITY);
+	}
+}
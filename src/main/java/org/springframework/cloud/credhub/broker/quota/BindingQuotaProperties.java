@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.quota;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Binding quotas. A negative value means unlimited. Plans are keyed by name or id.
+ */
+@ConfigurationProperties("broker.quota")
+@Getter
+@Setter
+public class BindingQuotaProperties {
+	private boolean enabled = true;
+
+	/**
+	 * Bindings allowed per service instance when neither the instance nor its plan
+	 * sets a limit.
+	 */
+	private long maxBindingsPerInstance = -1;
+
+	private Map<String, PlanQuota> plans = new HashMap<>();
+
+	/**
+	 * Per service instance overrides of the bindings allowed.
+	 */
+	private Map<String, Long> instances = new HashMap<>();
+
+	/**
+	 * Milliseconds between reconciliations of the counters with the database.
+	 */
+	private long reconcileInterval = 60000;
+
+	@Getter
+	@Setter
+	public static class PlanQuota {
+		/**
+		 * Bindings allowed per service instance of the plan.
+		 */
+		private long maxBindingsPerInstance = -1;
+
+		/**
+		 * Bindings allowed across all service instances of the plan.
+		 */
+		private long maxBindings = -1;
+	}
+}
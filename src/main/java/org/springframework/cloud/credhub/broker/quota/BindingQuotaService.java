@@ -0,0 +1,306 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.quota;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.service.ServicePlans;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Enforces binding quotas against in-memory counters instead of counting rows on every
+ * bind. Counters are seeded from the database at startup and periodically reconciled
+ * with it so drift from failed requests or other broker nodes is corrected.
+ * <p>
+ * A counter is only reconciled when neither it nor its in-flight reservations changed
+ * while the database was queried, so concurrent binds are never lost.
+ */
+public class BindingQuotaService {
+	private static final Log log = LogFactory.getLog(BindingQuotaService.class);
+
+	private final BindingQuotaProperties properties;
+	private final ServiceBindingRepository bindingRepository;
+	private final ServicePlans servicePlans;
+
+	private final ConcurrentMap<String, InstanceUsage> instances = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, PlanUsage> plans = new ConcurrentHashMap<>();
+
+	public BindingQuotaService(BindingQuotaProperties properties,
+			ServiceBindingRepository bindingRepository, ServicePlans servicePlans) {
+		this.properties = properties;
+		this.bindingRepository = bindingRepository;
+		this.servicePlans = servicePlans;
+	}
+
+	/**
+	 * Reserve room for one more binding of a service instance.
+	 * @throws BindingQuotaExceededException if the instance or its plan is full
+	 */
+	public Reservation reserve(String instanceId, String planId) {
+		if (!properties.isEnabled()) {
+			return Reservation.NONE;
+		}
+
+		InstanceUsage instance = instances.computeIfAbsent(instanceId,
+				id -> new InstanceUsage(planId));
+		long instanceLimit = instanceLimit(instanceId, planId);
+		for (;;) {
+			long current = instance.bindings.get();
+			if (instanceLimit >= 0 && current >= instanceLimit) {
+				throw new BindingQuotaExceededException("Service instance " + instanceId
+						+ " has reached its limit of " + instanceLimit + " bindings");
+			}
+			if (instance.bindings.compareAndSet(current, current + 1)) {
+				break;
+			}
+		}
+		instance.pending.incrementAndGet();
+
+		PlanUsage plan = plans.computeIfAbsent(planId, id -> new PlanUsage());
+		plan.bindings.add(1);
+		plan.pending.add(1);
+		long planLimit = planLimit(planId);
+		if (planLimit >= 0 && plan.bindings.sum() > planLimit) {
+			new Reservation(instance, plan).release();
+			throw new BindingQuotaExceededException("Plan " + planName(planId)
+					+ " has reached its limit of " + planLimit + " bindings");
+		}
+		return new Reservation(instance, plan);
+	}
+
+	/**
+	 * Account for a binding that has been deleted.
+	 */
+	public void released(String instanceId, String planId) {
+		InstanceUsage instance = instances.get(instanceId);
+		if (instance != null) {
+			instance.bindings.updateAndGet(current -> Math.max(0, current - 1));
+		}
+		PlanUsage plan = plans.get(planId);
+		if (plan != null) {
+			plan.bindings.add(-1);
+		}
+	}
+
+	/**
+	 * Drop the counter of a deprovisioned service instance.
+	 */
+	public void instanceDeleted(String instanceId) {
+		InstanceUsage instance = instances.remove(instanceId);
+		if (instance != null) {
+			PlanUsage plan = plans.get(instance.planId);
+			if (plan != null) {
+				plan.bindings.add(-instance.bindings.get());
+			}
+		}
+	}
+
+	/**
+	 * Move the bindings of a service instance over to the plan it was updated to.
+	 */
+	public void planChanged(String instanceId, String planId) {
+		InstanceUsage previous = instances.remove(instanceId);
+		if (previous == null) {
+			return;
+		}
+		long bindings = previous.bindings.get();
+		PlanUsage plan = plans.get(previous.planId);
+		if (plan != null) {
+			plan.bindings.add(-bindings);
+		}
+		plans.computeIfAbsent(planId, id -> new PlanUsage()).bindings.add(bindings);
+		instances.putIfAbsent(instanceId, new InstanceUsage(planId, bindings));
+	}
+
+	@PostConstruct
+	public void seed() {
+		reconcile();
+	}
+
+	@Scheduled(fixedDelayString = "${broker.quota.reconcile-interval:60000}", initialDelayString = "${broker.quota.reconcile-interval:60000}")
+	public void reconcile() {
+		if (!properties.isEnabled()) {
+			return;
+		}
+
+		Map<String, long[]> instancesBefore = new HashMap<>();
+		instances.forEach((id, usage) -> instancesBefore.put(id,
+				new long[] { usage.bindings.get(), usage.pending.get() }));
+		Map<String, long[]> plansBefore = new HashMap<>();
+		plans.forEach((id, usage) -> plansBefore.put(id,
+				new long[] { usage.bindings.sum(), usage.pending.sum() }));
+
+		List<Object[]> rows = bindingRepository.countByInstance();
+
+		Map<String, Long> instanceCounts = new HashMap<>();
+		Map<String, Long> planCounts = new HashMap<>();
+		for (Object[] row : rows) {
+			String instanceId = (String) row[0];
+			String planId = (String) row[1];
+			long count = ((Number) row[2]).longValue();
+			instanceCounts.put(instanceId, count);
+			planCounts.merge(planId, count, Long::sum);
+			if (!instancesBefore.containsKey(instanceId)) {
+				instances.putIfAbsent(instanceId, new InstanceUsage(planId, count));
+			}
+			if (!plansBefore.containsKey(planId)) {
+				plans.computeIfAbsent(planId, id -> new PlanUsage()).bindings.add(count);
+			}
+		}
+
+		int corrected = 0;
+		for (Map.Entry<String, long[]> entry : instancesBefore.entrySet()) {
+			InstanceUsage usage = instances.get(entry.getKey());
+			long[] before = entry.getValue();
+			long expected = instanceCounts.getOrDefault(entry.getKey(), 0L) + before[1];
+			if (usage != null && before[0] != expected
+					&& usage.pending.get() == before[1]
+					&& usage.bindings.compareAndSet(before[0], expected)) {
+				corrected++;
+			}
+		}
+		for (Map.Entry<String, long[]> entry : plansBefore.entrySet()) {
+			PlanUsage usage = plans.get(entry.getKey());
+			long[] before = entry.getValue();
+			long expected = planCounts.getOrDefault(entry.getKey(), 0L) + before[1];
+			if (usage != null && before[0] != expected
+					&& usage.bindings.sum() == before[0]
+					&& usage.pending.sum() == before[1]) {
+				usage.bindings.add(expected - before[0]);
+				corrected++;
+			}
+		}
+
+		if (corrected > 0 && log.isDebugEnabled()) {
+			log.debug("Corrected " + corrected + " binding quota counters");
+		}
+	}
+
+	public Map<String, Object> snapshot() {
+		Map<String, Object> instanceUsage = new LinkedHashMap<>();
+		instances.forEach((id, usage) -> instanceUsage.put(id,
+				usage(usage.bindings.get(), instanceLimit(id, usage.planId))));
+		Map<String, Object> planUsage = new LinkedHashMap<>();
+		plans.forEach((id, usage) -> planUsage.put(planName(id),
+				usage(usage.bindings.sum(), planLimit(id))));
+
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("enabled", properties.isEnabled());
+		snapshot.put("plans", planUsage);
+		snapshot.put("instances", instanceUsage);
+		return snapshot;
+	}
+
+	private long instanceLimit(String instanceId, String planId) {
+		Long override = properties.getInstances().get(instanceId);
+		if (override != null) {
+			return override;
+		}
+		BindingQuotaProperties.PlanQuota plan = planQuota(planId);
+		if (plan != null && plan.getMaxBindingsPerInstance() >= 0) {
+			return plan.getMaxBindingsPerInstance();
+		}
+		return properties.getMaxBindingsPerInstance();
+	}
+
+	private long planLimit(String planId) {
+		BindingQuotaProperties.PlanQuota plan = planQuota(planId);
+		return plan != null ? plan.getMaxBindings() : -1;
+	}
+
+	private BindingQuotaProperties.PlanQuota planQuota(String planId) {
+		BindingQuotaProperties.PlanQuota plan = properties.getPlans().get(planId);
+		return plan != null ? plan : properties.getPlans().get(servicePlans.nameOf(planId));
+	}
+
+	private String planName(String planId) {
+		return servicePlans.nameOf(planId);
+	}
+
+	private static Map<String, Long> usage(long bindings, long limit) {
+		Map<String, Long> usage = new LinkedHashMap<>();
+		usage.put("bindings", bindings);
+		usage.put("limit", limit);
+		return usage;
+	}
+
+	private static class InstanceUsage {
+		private final String planId;
+		private final AtomicLong bindings;
+		private final AtomicLong pending = new AtomicLong();
+
+		InstanceUsage(String planId) {
+			this(planId, 0);
+		}
+
+		InstanceUsage(String planId, long bindings) {
+			this.planId = planId;
+			this.bindings = new AtomicLong(bindings);
+		}
+	}
+
+	private static class PlanUsage {
+		private final LongAdder bindings = new LongAdder();
+		private final LongAdder pending = new LongAdder();
+	}
+
+	/**
+	 * Room taken for a binding being created. Exactly one of {@link #commit()} or
+	 * {@link #release()} takes effect.
+	 */
+	public static class Reservation {
+		static final Reservation NONE = new Reservation(null, null);
+
+		private final InstanceUsage instance;
+		private final PlanUsage plan;
+		private final AtomicBoolean settled = new AtomicBoolean();
+
+		private Reservation(InstanceUsage instance, PlanUsage plan) {
+			this.instance = instance;
+			this.plan = plan;
+		}
+
+		public void commit() {
+			if (instance != null && settled.compareAndSet(false, true)) {
+				instance.pending.decrementAndGet();
+				plan.pending.add(-1);
+			}
+		}
+
+		public void release() {
+			if (instance != null && settled.compareAndSet(false, true)) {
+				instance.bindings.decrementAndGet();
+				instance.pending.decrementAndGet();
+				plan.bindings.add(-1);
+				plan.pending.add(-1);
+			}
+		}
+	}
+}
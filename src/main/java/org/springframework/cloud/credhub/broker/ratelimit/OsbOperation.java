@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.ratelimit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.http.HttpMethod;
+
+/**
+ * The OSB API operations a request under {@code /v2} can map to.
+ */
+public enum OsbOperation {
+	CATALOG, PROVISION, UPDATE, DEPROVISION, GET_INSTANCE, BIND, UNBIND, GET_BINDING,
+	LAST_OPERATION, OTHER;
+
+	private static final String INSTANCES = "service_instances";
+	private static final String BINDINGS = "service_bindings";
+	private static final String LAST_OPERATION_SEGMENT = "last_operation";
+
+	public static OsbOperation from(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		String[] segments = path.replaceAll("^/+|/+$", "").split("/+");
+		HttpMethod method = HttpMethod.resolve(request.getMethod());
+
+		if (segments.length < 2 || !"v2".equals(segments[0]) || method == null) {
+			return OTHER;
+		}
+		if ("catalog".equals(segments[1])) {
+			return CATALOG;
+		}
+		if (!INSTANCES.equals(segments[1]) || segments.length < 3) {
+			return OTHER;
+		}
+		if (LAST_OPERATION_SEGMENT.equals(segments[segments.length - 1])) {
+			return LAST_OPERATION;
+		}
+		if (segments.length == 3) {
+			switch (method) {
+			case PUT:
+				return PROVISION;
+			case PATCH:
+				return UPDATE;
+			case DELETE:
+				return DEPROVISION;
+			case GET:
+				return GET_INSTANCE;
+			default:
+				return OTHER;
+			}
+		}
+		if (segments.length == 5 && BINDINGS.equals(segments[3])) {
+			switch (method) {
+			case PUT:
+				return BIND;
+			case DELETE:
+				return UNBIND;
+			case GET:
+				return GET_BINDING;
+			default:
+				return OTHER;
+			}
+		}
+		return OTHER;
+	}
+}
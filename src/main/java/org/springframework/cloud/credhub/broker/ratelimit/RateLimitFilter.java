@@ -0,0 +1,73 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.ratelimit;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Admits OSB API requests through the {@link RateLimiter}. Must run after the Spring
+ * Security filter chain so the authenticated principal is known.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+	private static final String ANONYMOUS = "anonymous";
+
+	private final RateLimiter rateLimiter;
+
+	public RateLimitFilter(RateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request,
+			HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		OsbOperation operation = OsbOperation.from(request);
+		long wait = rateLimiter.tryAcquire(principal(), operation);
+
+		if (wait == 0) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		long retryAfter = Math.max(1, (wait + TimeUnit.SECONDS.toNanos(1) - 1)
+				/ TimeUnit.SECONDS.toNanos(1));
+		response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		response.getWriter().write("{\"description\": \"Rate limit exceeded for "
+				+ operation + ", retry after " + retryAfter + " seconds\"}");
+	}
+
+	private String principal() {
+		Authentication authentication = SecurityContextHolder.getContext()
+				.getAuthentication();
+		return authentication != null ? authentication.getName() : ANONYMOUS;
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.ratelimit;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Token bucket limits for the OSB API. A limit configured for a principal wins over
+ * one configured for an operation, which wins over the default.
+ */
+@ConfigurationProperties("broker.rate-limit")
+@Getter
+@Setter
+public class RateLimitProperties {
+	private boolean enabled = true;
+
+	private Limit defaults = new Limit(50, 20);
+
+	private Map<OsbOperation, Limit> operations = new EnumMap<>(OsbOperation.class);
+
+	private Map<String, Limit> principals = new HashMap<>();
+
+	public Limit resolve(String principal, OsbOperation operation) {
+		Limit limit = principals.get(principal);
+		if (limit == null) {
+			limit = operations.get(operation);
+		}
+		return limit != null ? limit : defaults;
+	}
+
+	@Getter
+	@Setter
+	public static class Limit {
+		/**
+		 * Maximum number of requests that can be served in a burst.
+		 */
+		private long capacity;
+
+		/**
+		 * Number of tokens added back to the bucket every second.
+		 */
+		private double refillPerSecond;
+
+		public Limit() {
+		}
+
+		public Limit(long capacity, double refillPerSecond) {
+			this.capacity = capacity;
+			this.refillPerSecond = refillPerSecond;
+		}
+	}
+}
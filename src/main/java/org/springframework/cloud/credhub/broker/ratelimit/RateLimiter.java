@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.ratelimit;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps one {@link TokenBucket} per principal and OSB operation and records the
+ * decisions taken.
+ */
+public class RateLimiter {
+	private final RateLimitProperties properties;
+
+	private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+	private final Map<OsbOperation, LongAdder> allowed = new EnumMap<>(OsbOperation.class);
+	private final Map<OsbOperation, LongAdder> rejected = new EnumMap<>(OsbOperation.class);
+
+	public RateLimiter(RateLimitProperties properties) {
+		this.properties = properties;
+		for (OsbOperation operation : OsbOperation.values()) {
+			allowed.put(operation, new LongAdder());
+			rejected.put(operation, new LongAdder());
+		}
+
+		// a bad limit fails the startup rather than the first request it applies to
+		validate("defaults", properties.getDefaults());
+		properties.getOperations()
+				.forEach((operation, limit) -> validate("operations." + operation, limit));
+		properties.getPrincipals()
+				.forEach((principal, limit) -> validate("principals." + principal, limit));
+	}
+
+	/**
+	 * Try to admit a request.
+	 * @return {@code 0} if the request is admitted, otherwise the number of nanoseconds
+	 * the caller should wait before retrying
+	 */
+	public long tryAcquire(String principal, OsbOperation operation) {
+		TokenBucket bucket = buckets.computeIfAbsent(key(principal, operation), key -> {
+			RateLimitProperties.Limit limit = properties.resolve(principal, operation);
+			return new TokenBucket(limit.getCapacity(), limit.getRefillPerSecond());
+		});
+
+		long wait = bucket.tryAcquire();
+		(wait == 0 ? allowed : rejected).get(operation).increment();
+		return wait;
+	}
+
+	private static void validate(String name, RateLimitProperties.Limit limit) {
+		try {
+			TokenBucket.validate(limit.getCapacity(), limit.getRefillPerSecond());
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(
+					"Invalid limit broker.rate-limit." + name + ": " + e.getMessage(), e);
+		}
+	}
+
+	public Map<String, Object> snapshot() {
+		Map<String, Object> decisions = new LinkedHashMap<>();
+		for (OsbOperation operation : OsbOperation.values()) {
+			Map<String, Long> counts = new LinkedHashMap<>();
+			counts.put("allowed", allowed.get(operation).sum());
+			counts.put("rejected", rejected.get(operation).sum());
+			decisions.put(operation.name(), counts);
+		}
+
+		Map<String, Object> levels = new LinkedHashMap<>();
+		buckets.forEach((key, bucket) -> {
+			Map<String, Long> level = new LinkedHashMap<>();
+			level.put("available", bucket.availableTokens());
+			level.put("capacity", bucket.getCapacity());
+			levels.put(key, level);
+		});
+
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("enabled", properties.isEnabled());
+		snapshot.put("decisions", decisions);
+		snapshot.put("buckets", levels);
+		return snapshot;
+	}
+
+	private static String key(String principal, OsbOperation operation) {
+		return principal + ":" + operation;
+	}
+}
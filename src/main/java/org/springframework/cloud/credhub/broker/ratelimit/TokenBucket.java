@@ -0,0 +1,86 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. The whole bucket state is kept in a single {@link AtomicLong}
+ * holding the theoretical arrival time of the next request (GCRA), so acquiring a
+ * token is one CAS on the uncontended path.
+ */
+class TokenBucket {
+	private final long capacity;
+	private final long emissionIntervalNanos;
+	private final long burstToleranceNanos;
+	private final AtomicLong theoreticalArrival;
+
+	TokenBucket(long capacity, double refillPerSecond) {
+		validate(capacity, refillPerSecond);
+		this.capacity = capacity;
+		this.emissionIntervalNanos = Math.max(1,
+				(long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond));
+		this.burstToleranceNanos = emissionIntervalNanos * (this.capacity - 1);
+		this.theoreticalArrival = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * @throws IllegalArgumentException unless both the capacity and the refill rate are
+	 * positive
+	 */
+	static void validate(long capacity, double refillPerSecond) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException(
+					"Capacity must be positive but was " + capacity);
+		}
+		if (!(refillPerSecond > 0) || Double.isInfinite(refillPerSecond)) {
+			throw new IllegalArgumentException(
+					"Refill rate must be positive but was " + refillPerSecond);
+		}
+	}
+
+	/**
+	 * Try to take one token.
+	 * @return {@code 0} if a token was taken, otherwise the number of nanoseconds until
+	 * one becomes available
+	 */
+	long tryAcquire() {
+		for (;;) {
+			long now = System.nanoTime();
+			long current = theoreticalArrival.get();
+			long start = Math.max(current, now);
+			long wait = start - now - burstToleranceNanos;
+			if (wait > 0) {
+				return wait;
+			}
+			if (theoreticalArrival.compareAndSet(current, start + emissionIntervalNanos)) {
+				return 0;
+			}
+		}
+	}
+
+	long availableTokens() {
+		long now = System.nanoTime();
+		long backlog = Math.max(theoreticalArrival.get(), now) - now;
+		return Math.max(0, capacity - (backlog + emissionIntervalNanos - 1) / emissionIntervalNanos);
+	}
+
+	long getCapacity() {
+		return capacity;
+	}
+}
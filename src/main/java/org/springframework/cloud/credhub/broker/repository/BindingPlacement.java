@@ -0,0 +1,37 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.repository;
+
+/**
+ * Where a binding's credential is stored.
+ */
+public interface BindingPlacement {
+	String getBindingId();
+
+	String getInstanceId();
+
+	String getPlanId();
+
+	/**
+	 * The plan id the binding's CredHub credential is named after.
+	 */
+	String getCredentialPlanId();
+
+	String getAppGuid();
+
+	String getCredhubShard();
+}
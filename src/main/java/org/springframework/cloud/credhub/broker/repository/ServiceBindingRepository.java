@@ -16,8 +16,149 @@
 
 package org.springframework.cloud.credhub.broker.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 import org.springframework.cloud.credhub.broker.model.ServiceBinding;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface ServiceBindingRepository extends JpaRepository<ServiceBinding, String> {
+	@EntityGraph(attributePaths = { "parameters", "credentials" })
+	Optional<ServiceBinding> findWithDetailsByBindingId(String bindingId);
+
+	/**
+	 * Bindings created before bindings referenced their instance are found too, with
+	 * no instance or plan.
+	 */
+	@Query("select b.bindingId as bindingId, i.instanceId as instanceId, i.planId as planId, "
+			+ "coalesce(i.credentialPlanId, i.planId) as credentialPlanId, b.appGuid as appGuid, "
+			+ "b.credhubShard as credhubShard from ServiceBinding b left join b.serviceInstance i "
+			+ "where b.bindingId = :bindingId")
+	Optional<BindingPlacement> findPlacementByBindingId(@Param("bindingId") String bindingId);
+
+	@Modifying
+	@Query(value = "DELETE FROM service_binding_parameters WHERE binding_id = :bindingId", nativeQuery = true)
+	int deleteParametersByBindingId(@Param("bindingId") String bindingId);
+
+	@Modifying
+	@Query(value = "DELETE FROM service_binding_credentials WHERE binding_id = :bindingId", nativeQuery = true)
+	int deleteCredentialsByBindingId(@Param("bindingId") String bindingId);
+
+	@Modifying(clearAutomatically = true)
+	@Query("delete from ServiceBinding b where b.bindingId = :bindingId")
+	int deleteByBindingId(@Param("bindingId") String bindingId);
+
+	@Modifying
+	@Query(value = "DELETE FROM service_binding_parameters WHERE binding_id IN "
+			+ "(SELECT binding_id FROM service_bindings WHERE instance_id = :instanceId)", nativeQuery = true)
+	int deleteParametersByInstanceId(@Param("instanceId") String instanceId);
+
+	@Modifying
+	@Query(value = "DELETE FROM service_binding_credentials WHERE binding_id IN "
+			+ "(SELECT binding_id FROM service_bindings WHERE instance_id = :instanceId)", nativeQuery = true)
+	int deleteCredentialsByInstanceId(@Param("instanceId") String instanceId);
+
+	@Modifying(clearAutomatically = true)
+	@Query(value = "DELETE FROM service_bindings WHERE instance_id = :instanceId", nativeQuery = true)
+	int deleteByInstanceId(@Param("instanceId") String instanceId);
+
+	/**
+	 * Link the bindings of an instance that were created before bindings referenced
+	 * their instance, recognised by the instance path their CredHub reference starts with.
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "UPDATE service_bindings SET instance_id = :instanceId WHERE instance_id IS NULL "
+			+ "AND binding_id IN (SELECT binding_id FROM service_binding_credentials "
+			+ "WHERE credential_name = 'credhub-ref' AND credential_value LIKE :instancePath)", nativeQuery = true)
+	int linkLegacyBindings(@Param("instanceId") String instanceId,
+			@Param("instancePath") String instancePathPattern);
+
+	@Query("select b.bindingId from ServiceBinding b where b.serviceInstance.instanceId = :instanceId")
+	List<String> findBindingIdsByInstanceId(@Param("instanceId") String instanceId);
+
+	/**
+	 * The bindings of an instance, each with the username of its broker user, or
+	 * {@code null} for bindings that have none, such as certificate bindings.
+	 */
+	@Query(value = "SELECT b.binding_id, u.username FROM service_bindings b LEFT JOIN users u "
+			+ "ON u.username = b.binding_id WHERE b.instance_id = :instanceId", nativeQuery = true)
+	List<Object[]> findBindingUsersByInstanceId(@Param("instanceId") String instanceId);
+
+	@Query("select b.bindingId from ServiceBinding b where b.bindingId in (:bindingIds)")
+	List<String> findExistingBindingIds(@Param("bindingIds") Collection<String> bindingIds);
+
+	@Query("select distinct b.credhubShard from ServiceBinding b where b.serviceInstance.instanceId = :instanceId")
+	List<String> findCredhubShardsByInstanceId(@Param("instanceId") String instanceId);
+
+	@Query(value = "select b.bindingId as bindingId, i.instanceId as instanceId, i.planId as planId, "
+			+ "coalesce(i.credentialPlanId, i.planId) as credentialPlanId, b.appGuid as appGuid, "
+			+ "b.credhubShard as credhubShard from ServiceBinding b join b.serviceInstance i "
+			+ "order by b.bindingId",
+			countQuery = "select count(b) from ServiceBinding b join b.serviceInstance i")
+	Page<BindingPlacement> findPlacements(Pageable pageable);
+
+	@Query(value = "select b.bindingId as bindingId, i.instanceId as instanceId, i.planId as planId, "
+			+ "coalesce(i.credentialPlanId, i.planId) as credentialPlanId, b.appGuid as appGuid, "
+			+ "b.credhubShard as credhubShard from ServiceBinding b join b.serviceInstance i "
+			+ "where b.appGuid = :appGuid order by b.bindingId",
+			countQuery = "select count(b) from ServiceBinding b where b.appGuid = :appGuid")
+	Page<BindingPlacement> findPlacementsByAppGuid(@Param("appGuid") String appGuid,
+			Pageable pageable);
+
+	@Query(value = "select b.bindingId as bindingId, i.instanceId as instanceId, i.planId as planId, "
+			+ "coalesce(i.credentialPlanId, i.planId) as credentialPlanId, b.appGuid as appGuid, "
+			+ "b.credhubShard as credhubShard from ServiceBinding b join b.serviceInstance i "
+			+ "where i.instanceId = :instanceId order by b.bindingId",
+			countQuery = "select count(b) from ServiceBinding b where b.serviceInstance.instanceId = :instanceId")
+	Page<BindingPlacement> findPlacementsByInstanceId(@Param("instanceId") String instanceId,
+			Pageable pageable);
+
+	@Query(value = "select b.bindingId as bindingId, i.instanceId as instanceId, i.planId as planId, "
+			+ "coalesce(i.credentialPlanId, i.planId) as credentialPlanId, b.appGuid as appGuid, "
+			+ "b.credhubShard as credhubShard from ServiceBinding b join b.serviceInstance i "
+			+ "where b.appGuid = :appGuid and i.instanceId = :instanceId order by b.bindingId",
+			countQuery = "select count(b) from ServiceBinding b "
+					+ "where b.appGuid = :appGuid and b.serviceInstance.instanceId = :instanceId")
+	Page<BindingPlacement> findPlacementsByAppGuidAndInstanceId(
+			@Param("appGuid") String appGuid, @Param("instanceId") String instanceId,
+			Pageable pageable);
+
+	@Query("select b.bindingId as bindingId, i.instanceId as instanceId, i.planId as planId, "
+			+ "coalesce(i.credentialPlanId, i.planId) as credentialPlanId, b.appGuid as appGuid, "
+			+ "b.credhubShard as credhubShard from ServiceBinding b join b.serviceInstance i "
+			+ "where b.appGuid = :appGuid")
+	List<BindingPlacement> findAllPlacementsByAppGuid(@Param("appGuid") String appGuid);
+
+	@Modifying
+	@Query(value = "DELETE FROM service_binding_parameters WHERE binding_id IN (:bindingIds)", nativeQuery = true)
+	int deleteParametersByBindingIds(@Param("bindingIds") Collection<String> bindingIds);
+
+	@Modifying
+	@Query(value = "DELETE FROM service_binding_credentials WHERE binding_id IN (:bindingIds)", nativeQuery = true)
+	int deleteCredentialsByBindingIds(@Param("bindingIds") Collection<String> bindingIds);
+
+	@Modifying(clearAutomatically = true)
+	@Query("delete from ServiceBinding b where b.bindingId in (:bindingIds)")
+	int deleteByBindingIds(@Param("bindingIds") Collection<String> bindingIds);
+
+	@Query("select b.credhubShard, count(b) from ServiceBinding b group by b.credhubShard")
+	List<Object[]> countByCredhubShard();
+
+	@Query("select i.instanceId, i.planId, count(b) from ServiceBinding b join b.serviceInstance i "
+			+ "group by i.instanceId, i.planId")
+	List<Object[]> countByInstance();
+
+	@Transactional
+	@Modifying
+	@Query("update ServiceBinding b set b.credhubShard = :shard where b.bindingId = :bindingId")
+	int updateCredhubShard(@Param("bindingId") String bindingId, @Param("shard") String shard);
 }
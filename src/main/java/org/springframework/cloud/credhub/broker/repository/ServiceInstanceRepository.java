@@ -16,8 +16,24 @@
 
 package org.springframework.cloud.credhub.broker.repository;
 
+import java.util.Optional;
+
 import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface ServiceInstanceRepository extends JpaRepository<ServiceInstance, String> {
+	@EntityGraph(attributePaths = "parameters")
+	Optional<ServiceInstance> findWithParametersByInstanceId(String instanceId);
+
+	@Modifying
+	@Query(value = "DELETE FROM service_instance_parameters WHERE instance_id = :instanceId", nativeQuery = true)
+	int deleteParametersByInstanceId(@Param("instanceId") String instanceId);
+
+	@Modifying(clearAutomatically = true)
+	@Query("delete from ServiceInstance i where i.instanceId = :instanceId")
+	int deleteByInstanceId(@Param("instanceId") String instanceId);
 }
@@ -16,9 +16,42 @@
 
 package org.springframework.cloud.credhub.broker.repository;
 
+import java.util.Collection;
+
 import org.springframework.cloud.credhub.broker.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 	User findByUsername(String username);
+
+	@Modifying
+	@Query(value = "DELETE FROM user_authorities WHERE user_id IN "
+			+ "(SELECT id FROM users WHERE username = :username)", nativeQuery = true)
+	int deleteAuthoritiesByUsername(@Param("username") String username);
+
+	@Modifying(clearAutomatically = true)
+	@Query("delete from User u where u.username = :username")
+	int deleteByUsername(@Param("username") String username);
+
+	@Modifying
+	@Query(value = "DELETE FROM user_authorities WHERE user_id IN "
+			+ "(SELECT id FROM users WHERE username IN (:usernames))", nativeQuery = true)
+	int deleteAuthoritiesByUsernames(@Param("usernames") Collection<String> usernames);
+
+	@Modifying(clearAutomatically = true)
+	@Query("delete from User u where u.username in (:usernames)")
+	int deleteByUsernames(@Param("usernames") Collection<String> usernames);
+
+	@Modifying
+	@Query(value = "DELETE FROM user_authorities WHERE user_id IN (SELECT u.id FROM users u "
+			+ "JOIN service_bindings b ON u.username = b.binding_id WHERE b.instance_id = :instanceId)", nativeQuery = true)
+	int deleteAuthoritiesByInstanceId(@Param("instanceId") String instanceId);
+
+	@Modifying(clearAutomatically = true)
+	@Query(value = "DELETE FROM users WHERE username IN "
+			+ "(SELECT binding_id FROM service_bindings WHERE instance_id = :instanceId)", nativeQuery = true)
+	int deleteByInstanceId(@Param("instanceId") String instanceId);
 }
@@ -16,23 +16,50 @@
 
 package org.springframework.cloud.credhub.broker.service;
 
+import static org.springframework.cloud.credhub.broker.audit.AuditAction.CREATE;
+import static org.springframework.cloud.credhub.broker.audit.AuditAction.DELETE;
+import static org.springframework.cloud.credhub.broker.audit.AuditAction.UPDATE;
+import static org.springframework.cloud.credhub.broker.audit.AuditResource.SERVICE_INSTANCE;
+
 import java.util.Optional;
 
+import org.springframework.cloud.credhub.broker.audit.AuditTrail;
+import org.springframework.cloud.credhub.broker.datasource.ReadFromReplica;
 import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.quota.BindingQuotaService;
 import org.springframework.cloud.credhub.broker.repository.ServiceInstanceRepository;
+import org.springframework.cloud.credhub.broker.update.BindingCredentialPropagator;
+import org.springframework.cloud.credhub.broker.update.InstanceUpdate;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
 import org.springframework.cloud.servicebroker.model.instance.*;
 import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceResponse.CreateServiceInstanceResponseBuilder;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class CredentialStoreServiceInstanceService implements ServiceInstanceService {
 	private final ServiceInstanceRepository instanceRepository;
+	private final CredhubServiceInstanceBindingService bindingService;
+	private final AuditTrail auditTrail;
+	private final TransactionTemplate transactionTemplate;
+	private final ServicePlans servicePlans;
+	private final BindingCredentialPropagator propagator;
+	private final BindingQuotaService quotaService;
 
 	public CredentialStoreServiceInstanceService(
-			ServiceInstanceRepository instanceRepository) {
+			ServiceInstanceRepository instanceRepository,
+			CredhubServiceInstanceBindingService bindingService, AuditTrail auditTrail,
+			TransactionTemplate transactionTemplate, ServicePlans servicePlans,
+			BindingCredentialPropagator propagator, BindingQuotaService quotaService) {
 		this.instanceRepository = instanceRepository;
+		this.bindingService = bindingService;
+		this.auditTrail = auditTrail;
+		this.transactionTemplate = transactionTemplate;
+		this.servicePlans = servicePlans;
+		this.propagator = propagator;
+		this.quotaService = quotaService;
 	}
 
 	@Override
@@ -48,18 +75,21 @@ public class CredentialStoreServiceInstanceService implements ServiceInstanceSer
 		}
 		else {
 			saveInstance(request, instanceId);
+			auditTrail.record(CREATE, SERVICE_INSTANCE, instanceId, instanceId,
+					request.getOriginatingIdentity());
 		}
 
 		return responseBuilder.build();
 	}
 
 	@Override
+	@ReadFromReplica
 	public GetServiceInstanceResponse getServiceInstance(
 			GetServiceInstanceRequest request) {
 		String instanceId = request.getServiceInstanceId();
 
 		Optional<ServiceInstance> serviceInstance = instanceRepository
-				.findById(instanceId);
+				.findWithParametersByInstanceId(instanceId);
 
 		if (serviceInstance.isPresent()) {
 			return GetServiceInstanceResponse.builder()
@@ -72,13 +102,87 @@ public class CredentialStoreServiceInstanceService implements ServiceInstanceSer
 		}
 	}
 
+	/**
+	 * Persist a new plan and parameters. A plan change that switches between passwords
+	 * and certificates first rewrites the credential of every binding, asynchronously
+	 * if there are many and the platform accepts it.
+	 */
+	@Override
+	public UpdateServiceInstanceResponse updateServiceInstance(
+			UpdateServiceInstanceRequest request) {
+		String instanceId = request.getServiceInstanceId();
+
+		ServiceInstance serviceInstance = instanceRepository.findById(instanceId)
+				.orElseThrow(() -> new ServiceInstanceDoesNotExistException(instanceId));
+		String planId = request.getPlanId() != null ? request.getPlanId()
+				: serviceInstance.getPlanId();
+
+		if (servicePlans.isCertificatePlan(planId) == servicePlans
+				.isCertificatePlan(serviceInstance.getPlanId())) {
+			saveUpdate(request, planId);
+			return UpdateServiceInstanceResponse.builder().build();
+		}
+
+		InstanceUpdate update = propagator.start(instanceId, serviceInstance.getPlanId(),
+				planId, () -> saveUpdate(request, planId));
+		if (request.isAsyncAccepted() && propagator.isLarge(update)) {
+			return UpdateServiceInstanceResponse.builder().async(true)
+					.operation(update.getOperation()).build();
+		}
+
+		update.await();
+		if (update.getState() == OperationState.FAILED) {
+			throw new ServiceBrokerException(update.getDescription());
+		}
+		return UpdateServiceInstanceResponse.builder().build();
+	}
+
+	@Override
+	public GetLastServiceOperationResponse getLastOperation(
+			GetLastServiceOperationRequest request) {
+		String instanceId = request.getServiceInstanceId();
+
+		InstanceUpdate update = propagator.find(instanceId, request.getOperation());
+		if (update != null) {
+			return GetLastServiceOperationResponse.builder()
+					.operationState(update.getState())
+					.description(update.getDescription()).build();
+		}
+
+		// the update runs on another node, or this node restarted while running it;
+		// the plan_id of the request is optional, the operation id records the plan
+		ServiceInstance serviceInstance = instanceRepository.findById(instanceId)
+				.orElseThrow(() -> new ServiceInstanceDoesNotExistException(instanceId));
+		String planId = InstanceUpdate.planOf(request.getOperation());
+		if (planId == null) {
+			planId = request.getPlanId();
+		}
+		if (planId == null || serviceInstance.getPlanId().equals(planId)) {
+			return GetLastServiceOperationResponse.builder()
+					.operationState(OperationState.SUCCEEDED).build();
+		}
+		if (propagator.mayBeRunning(request.getOperation())) {
+			return GetLastServiceOperationResponse.builder()
+					.operationState(OperationState.IN_PROGRESS).build();
+		}
+		return GetLastServiceOperationResponse.builder()
+				.operationState(OperationState.FAILED)
+				.description("The update was interrupted, please retry it").build();
+	}
+
 	@Override
 	public DeleteServiceInstanceResponse deleteServiceInstance(
 			DeleteServiceInstanceRequest request) {
 		String instanceId = request.getServiceInstanceId();
 
 		if (instanceRepository.existsById(instanceId)) {
-			instanceRepository.deleteById(instanceId);
+			bindingService.deleteServiceInstanceBindings(instanceId,
+					request.getOriginatingIdentity(), () -> {
+						instanceRepository.deleteParametersByInstanceId(instanceId);
+						instanceRepository.deleteByInstanceId(instanceId);
+					});
+			auditTrail.record(DELETE, SERVICE_INSTANCE, instanceId, instanceId,
+					request.getOriginatingIdentity());
 
 			return DeleteServiceInstanceResponse.builder().build();
 		}
@@ -87,6 +191,22 @@ public class CredentialStoreServiceInstanceService implements ServiceInstanceSer
 		}
 	}
 
+	private void saveUpdate(UpdateServiceInstanceRequest request, String planId) {
+		String instanceId = request.getServiceInstanceId();
+		String previousPlanId = transactionTemplate.execute(status -> {
+			ServiceInstance serviceInstance = instanceRepository
+					.findWithParametersByInstanceId(instanceId)
+					.orElseThrow(() -> new ServiceInstanceDoesNotExistException(instanceId));
+			instanceRepository.save(serviceInstance.withPlan(planId, request.getParameters()));
+			return serviceInstance.getPlanId();
+		});
+		if (!planId.equals(previousPlanId)) {
+			quotaService.planChanged(instanceId, planId);
+		}
+		auditTrail.record(UPDATE, SERVICE_INSTANCE, instanceId, instanceId,
+				request.getOriginatingIdentity());
+	}
+
 	private void saveInstance(CreateServiceInstanceRequest request, String instanceId) {
 		ServiceInstance serviceInstance = new ServiceInstance(instanceId,
 				request.getServiceDefinitionId(), request.getPlanId(),
@@ -16,50 +16,118 @@
 
 package org.springframework.cloud.credhub.broker.service;
 
+import static org.springframework.cloud.credhub.broker.audit.AuditAction.CREATE;
+import static org.springframework.cloud.credhub.broker.audit.AuditAction.DELETE;
+import static org.springframework.cloud.credhub.broker.audit.AuditResource.SERVICE_BINDING;
+import static org.springframework.cloud.credhub.broker.audit.AuditResource.USER;
 import static org.springframework.credhub.support.permissions.Operation.READ;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cloud.credhub.broker.audit.AuditTrail;
+import org.springframework.cloud.credhub.broker.certificate.CertificateIssuer;
+import org.springframework.cloud.credhub.broker.config.CredHubConfiguration;
+import org.springframework.cloud.credhub.broker.credhub.CredHubErrors;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShards;
+import org.springframework.cloud.credhub.broker.credhub.CredentialNames;
+import org.springframework.cloud.credhub.broker.datasource.ReadFromReplica;
 import org.springframework.cloud.credhub.broker.model.ServiceBinding;
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.repository.BindingPlacement;
 import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.repository.ServiceInstanceRepository;
 import org.springframework.cloud.credhub.broker.model.ApplicationInformation;
 import org.springframework.cloud.credhub.broker.model.User;
+import org.springframework.cloud.credhub.broker.quota.BindingQuotaService;
 import org.springframework.cloud.credhub.broker.config.SecurityAuthorities;
+import org.springframework.cloud.credhub.broker.update.BindingCredentialPropagator;
+import org.springframework.cloud.credhub.broker.update.InstanceUpdate;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerConcurrencyException;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingDoesNotExistException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.cloud.servicebroker.model.Context;
 import org.springframework.cloud.servicebroker.model.binding.*;
 import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceAppBindingResponse.CreateServiceInstanceAppBindingResponseBuilder;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
+import org.springframework.credhub.core.CredHubException;
 import org.springframework.credhub.core.CredHubOperations;
 import org.springframework.credhub.support.CredentialDetails;
+import org.springframework.credhub.support.CredentialSummary;
+import org.springframework.credhub.support.CredentialType;
 import org.springframework.credhub.support.ServiceInstanceCredentialName;
+import org.springframework.credhub.support.certificate.CertificateCredential;
+import org.springframework.credhub.support.certificate.CertificateCredentialRequest;
 import org.springframework.credhub.support.json.JsonCredential;
 import org.springframework.credhub.support.json.JsonCredentialRequest;
+import org.springframework.credhub.support.permissions.ActorType;
 import org.springframework.credhub.support.permissions.CredentialPermission;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 @Service
 public class CredhubServiceInstanceBindingService
 		implements ServiceInstanceBindingService {
+	private static final Log log = LogFactory.getLog(CredhubServiceInstanceBindingService.class);
+
 	private static final String URI_KEY = "uri";
 	private static final String USERNAME_KEY = "username";
 	private static final String PASSWORD_KEY = "password";
+	private static final int BULK_DELETE_CHUNK = 500;
 
 	private final ServiceBindingRepository bindingRepository;
+	private final ServiceInstanceRepository instanceRepository;
 	private final UserService userService;
 	private final ApplicationInformation applicationInformation;
-	private final CredHubOperations credHubOperations;
+	private final CredHubShards credHubShards;
+	private final Executor credHubExecutor;
+	private final TransactionTemplate transactionTemplate;
+	private final AuditTrail auditTrail;
+	private final BindingQuotaService quotaService;
+	private final ServicePlans servicePlans;
+	private final CertificateIssuer certificateIssuer;
+	private final ObjectProvider<BindingCredentialPropagator> propagator;
 
 	public CredhubServiceInstanceBindingService(
-			ServiceBindingRepository bindingRepository, UserService userService,
-			CredHubOperations credHubOperations,
-			ApplicationInformation applicationInformation) {
+			ServiceBindingRepository bindingRepository,
+			ServiceInstanceRepository instanceRepository, UserService userService,
+			CredHubShards credHubShards,
+			ApplicationInformation applicationInformation,
+			@Qualifier(CredHubConfiguration.CREDHUB_TASK_EXECUTOR) Executor credHubExecutor,
+			TransactionTemplate transactionTemplate, AuditTrail auditTrail,
+			BindingQuotaService quotaService, ServicePlans servicePlans,
+			CertificateIssuer certificateIssuer,
+			ObjectProvider<BindingCredentialPropagator> propagator) {
 		this.bindingRepository = bindingRepository;
+		this.instanceRepository = instanceRepository;
 		this.userService = userService;
 		this.applicationInformation = applicationInformation;
-		this.credHubOperations = credHubOperations;
+		this.credHubShards = credHubShards;
+		this.credHubExecutor = credHubExecutor;
+		this.transactionTemplate = transactionTemplate;
+		this.auditTrail = auditTrail;
+		this.quotaService = quotaService;
+		this.servicePlans = servicePlans;
+		this.certificateIssuer = certificateIssuer;
+		this.propagator = propagator;
 	}
 
 	@Override
@@ -76,25 +144,61 @@ public class CredhubServiceInstanceBindingService
 					.credentials(binding.get().getCredentials());
 		}
 		else {
-			User user = createUser(request);
-			CredentialDetails<JsonCredential> credhubResponse = secureCredentials(request,
-					user);
-			Map<String, Object> credMap = new HashMap<String, Object>() {
-				{
-					put("credhub-ref", credhubResponse.getName().getName());
-				}
-			};
-			saveBinding(request, credMap);
+			ServiceInstance serviceInstance = instanceRepository
+					.findById(request.getServiceInstanceId())
+					.orElseThrow(() -> new ServiceInstanceDoesNotExistException(
+							request.getServiceInstanceId()));
+			checkNotUpdating(serviceInstance.getInstanceId());
+			BindingQuotaService.Reservation reservation = quotaService.reserve(
+					serviceInstance.getInstanceId(), serviceInstance.getPlanId());
+			boolean certificate = servicePlans
+					.isCertificatePlan(serviceInstance.getPlanId());
+			Map<String, Object> credMap;
+			try {
+				String shard = credHubShards.shardFor(request.getServiceInstanceId());
+				ServiceInstanceCredentialName name = CredentialNames.forBinding(
+						request.getServiceInstanceId(), serviceInstance.getCredentialPlanId(),
+						request.getBindingId());
+				String appGuid = appGuid(request);
+				List<CredentialPermission> permissions = appGuid != null
+						? Collections.singletonList(appPermission(appGuid))
+						: Collections.emptyList();
+				CredentialDetails<?> credhubResponse = certificate
+						? issueCertificate(shard, name, request.getServiceInstanceId(),
+								request.getBindingId(), permissions)
+						: secureCredentials(shard, name, request.getServiceInstanceId(),
+								createUser(request.getBindingId(),
+										request.getServiceInstanceId()),
+								permissions);
+				credMap = new HashMap<String, Object>() {
+					{
+						put("credhub-ref", credhubResponse.getName().getName());
+					}
+				};
+				saveBinding(request, serviceInstance, shard, credMap);
+				reservation.commit();
+			}
+			finally {
+				reservation.release();
+			}
+			if (!certificate) {
+				auditTrail.record(CREATE, USER, request.getBindingId(),
+						request.getServiceInstanceId(), request.getOriginatingIdentity());
+			}
+			auditTrail.record(CREATE, SERVICE_BINDING, request.getBindingId(),
+					request.getServiceInstanceId(), request.getOriginatingIdentity());
 			responseBuilder.bindingExisted(false).credentials(credMap);
 		}
 		return responseBuilder.build();
 	}
 
 	@Override
+	@ReadFromReplica
 	public GetServiceInstanceBindingResponse getServiceInstanceBinding(
 			GetServiceInstanceBindingRequest request) {
 		String bindingId = request.getBindingId();
-		Optional<ServiceBinding> serviceBinding = bindingRepository.findById(bindingId);
+		Optional<ServiceBinding> serviceBinding = bindingRepository
+				.findWithDetailsByBindingId(bindingId);
 		if (serviceBinding.isPresent()) {
 			return GetServiceInstanceAppBindingResponse.builder()
 					.parameters(serviceBinding.get().getParameters())
@@ -110,49 +214,385 @@ public class CredhubServiceInstanceBindingService
 			DeleteServiceInstanceBindingRequest request) {
 		String bindingId = request.getBindingId();
 
-		if (bindingRepository.existsById(bindingId)) {
-			userService.deleteUser(bindingId);
-			credHubOperations.deleteByName(ServiceInstanceCredentialName.builder()
-					.serviceBrokerName(request.getServiceInstanceId())
-					.serviceOfferingName(request.getPlanId())
-					.serviceBindingId(request.getBindingId())
-					.credentialName(request.getBindingId()).build());
-			bindingRepository.deleteById(bindingId);
+		Optional<BindingPlacement> placement = bindingRepository
+				.findPlacementByBindingId(bindingId);
+		if (placement.isPresent()) {
+			// bindings created before they referenced their instance have no plan
+			// recorded and are named after the plan of the request
+			String planId = placement.get().getPlanId() != null
+					? placement.get().getPlanId() : request.getPlanId();
+			String credentialPlanId = placement.get().getCredentialPlanId() != null
+					? placement.get().getCredentialPlanId() : request.getPlanId();
+			deleteCredential(placement.get().getCredhubShard(), CredentialNames.forBinding(
+					request.getServiceInstanceId(), credentialPlanId, bindingId));
+			int usersDeleted = transactionTemplate.execute(status -> {
+				int deleted = userService.deleteUser(bindingId);
+				bindingRepository.deleteParametersByBindingId(bindingId);
+				bindingRepository.deleteCredentialsByBindingId(bindingId);
+				bindingRepository.deleteByBindingId(bindingId);
+				return deleted;
+			});
+			quotaService.released(request.getServiceInstanceId(), planId);
+			if (usersDeleted > 0) {
+				auditTrail.record(DELETE, USER, bindingId, request.getServiceInstanceId(),
+						request.getOriginatingIdentity());
+			}
+			auditTrail.record(DELETE, SERVICE_BINDING, bindingId,
+					request.getServiceInstanceId(), request.getOriginatingIdentity());
 		}
 		else {
 			throw new ServiceInstanceBindingDoesNotExistException(bindingId);
 		}
 	}
 
-	private User createUser(CreateServiceInstanceBindingRequest request) {
-		return userService.createUser(request.getBindingId(), SecurityAuthorities.FULL_ACCESS.toString(),
-				request.getServiceInstanceId());
+	/**
+	 * An update rewrites the credentials of the bindings that exist when it starts, so a
+	 * binding created meanwhile would keep the previous plan's kind of credential.
+	 */
+	private void checkNotUpdating(String instanceId) {
+		BindingCredentialPropagator updates = propagator.getIfAvailable();
+		InstanceUpdate update = updates != null ? updates.find(instanceId, null) : null;
+		if (update != null && update.isInProgress()) {
+			throw new ServiceBrokerConcurrencyException(
+					"An update of service instance " + instanceId + " is in progress");
+		}
+	}
+
+	/**
+	 * Remove every binding of a service instance together with its user and CredHub
+	 * credential. CredHub credentials are deleted first, in parallel, so a failed
+	 * teardown leaves the database rows in place and can simply be retried. The rows
+	 * are then deleted in one transaction, which {@code deleteInstance} joins so the
+	 * instance goes with its bindings.
+	 */
+	public void deleteServiceInstanceBindings(String instanceId, Context originatingIdentity,
+			Runnable deleteInstance) {
+		int linked = bindingRepository.linkLegacyBindings(instanceId,
+				CredentialNames.instancePath(instanceId) + "%");
+		if (linked > 0) {
+			log.info("Linked " + linked + " legacy bindings to service instance "
+					+ instanceId);
+		}
+		deleteCredentials(instanceId);
+
+		List<Object[]> bindings = transactionTemplate.execute(status -> {
+			List<Object[]> rows = bindingRepository.findBindingUsersByInstanceId(instanceId);
+			userService.deleteUsersForInstance(instanceId);
+			bindingRepository.deleteParametersByInstanceId(instanceId);
+			bindingRepository.deleteCredentialsByInstanceId(instanceId);
+			bindingRepository.deleteByInstanceId(instanceId);
+			deleteInstance.run();
+			return rows;
+		});
+		quotaService.instanceDeleted(instanceId);
+
+		for (Object[] binding : bindings) {
+			String bindingId = (String) binding[0];
+			if (binding[1] != null) {
+				auditTrail.record(DELETE, USER, bindingId, instanceId, originatingIdentity);
+			}
+			auditTrail.record(DELETE, SERVICE_BINDING, bindingId, instanceId,
+					originatingIdentity);
+		}
+	}
+
+	/**
+	 * Remove every binding of an application, as needed when apps are deleted in bulk.
+	 * A credential CredHub no longer has counts as deleted. Bindings whose credential
+	 * could not be deleted are kept and reported as failed so the call can be repeated.
+	 */
+	public Map<String, Object> deleteBindingsForApp(String appGuid,
+			Context originatingIdentity) {
+		List<BindingPlacement> placements = bindingRepository
+				.findAllPlacementsByAppGuid(appGuid);
+
+		List<CompletableFuture<Void>> deletes = placements.stream()
+				.map(placement -> CompletableFuture.runAsync(
+						() -> credHubShards.operations(placement.getCredhubShard())
+								.deleteByName(CredentialNames.forBinding(
+										placement.getInstanceId(),
+										placement.getCredentialPlanId(),
+										placement.getBindingId())),
+						credHubExecutor))
+				.collect(Collectors.toList());
+
+		List<BindingPlacement> deleted = new ArrayList<>();
+		List<String> failed = new ArrayList<>();
+		for (int i = 0; i < placements.size(); i++) {
+			try {
+				deletes.get(i).join();
+				deleted.add(placements.get(i));
+			}
+			catch (CompletionException e) {
+				if (CredHubErrors.isNotFound(e.getCause())) {
+					deleted.add(placements.get(i));
+					continue;
+				}
+				log.warn("Failed to delete CredHub credential of binding "
+						+ placements.get(i).getBindingId(), e.getCause());
+				failed.add(placements.get(i).getBindingId());
+			}
+		}
+
+		for (int from = 0; from < deleted.size(); from += BULK_DELETE_CHUNK) {
+			List<String> ids = deleted
+					.subList(from, Math.min(from + BULK_DELETE_CHUNK, deleted.size()))
+					.stream().map(BindingPlacement::getBindingId)
+					.collect(Collectors.toList());
+			transactionTemplate.execute(status -> {
+				userService.deleteUsers(ids);
+				bindingRepository.deleteParametersByBindingIds(ids);
+				bindingRepository.deleteCredentialsByBindingIds(ids);
+				return bindingRepository.deleteByBindingIds(ids);
+			});
+		}
+
+		for (BindingPlacement placement : deleted) {
+			quotaService.released(placement.getInstanceId(), placement.getPlanId());
+			if (!servicePlans.isCertificatePlan(placement.getPlanId())) {
+				auditTrail.record(DELETE, USER, placement.getBindingId(),
+						placement.getInstanceId(), originatingIdentity);
+			}
+			auditTrail.record(DELETE, SERVICE_BINDING, placement.getBindingId(),
+					placement.getInstanceId(), originatingIdentity);
+		}
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("appGuid", appGuid);
+		result.put("deleted", deleted.stream().map(BindingPlacement::getBindingId)
+				.collect(Collectors.toList()));
+		result.put("failed", failed);
+		return result;
+	}
+
+	private void deleteCredentials(String instanceId) {
+		Set<String> shards = new LinkedHashSet<>(
+				bindingRepository.findCredhubShardsByInstanceId(instanceId));
+		shards.add(credHubShards.shardFor(instanceId));
+
+		List<CompletableFuture<Void>> deletes = new ArrayList<>();
+		for (String shard : shards) {
+			CredHubOperations operations = credHubShards.operations(shard);
+			List<CredentialSummary> credentials = operations
+					.findByPath(CredentialNames.instancePath(instanceId));
+			credentials.stream()
+					.map(credential -> CompletableFuture.runAsync(
+							() -> operations.deleteByName(credential.getName()),
+							credHubExecutor))
+					.forEach(deletes::add);
+		}
+
+		try {
+			CompletableFuture.allOf(deletes.toArray(new CompletableFuture[0])).join();
+		}
+		catch (CompletionException e) {
+			throw new ServiceBrokerException(
+					"Failed to delete CredHub credentials of service instance " + instanceId,
+					e.getCause());
+		}
 	}
 
-	private CredentialDetails<JsonCredential> secureCredentials(
-			CreateServiceInstanceBindingRequest request, User user) {
-		String uri = buildUri(request.getServiceInstanceId());
+	/**
+	 * Rewrite the CredHub credential of a binding for the kind of credential the given
+	 * plan hands out: a client certificate, or the password of a new broker user. The
+	 * credential keeps its name, so applications pick up the new value when they restart
+	 * and do not need to be rebound. A credential that already has the plan's type is
+	 * left alone, so the rewrite is safe to repeat after a failure.
+	 * <p>
+	 * CredHub does not change the type of an existing credential, so the old credential
+	 * is deleted right before the new one is written. If the write fails, the old value
+	 * is written back.
+	 */
+	public void rewriteCredential(BindingPlacement placement, String planId) {
+		String bindingId = placement.getBindingId();
+		String instanceId = placement.getInstanceId();
+		String shard = placement.getCredhubShard();
+		CredHubOperations operations = credHubShards.operations(shard);
+		ServiceInstanceCredentialName name = CredentialNames.forBinding(instanceId,
+				placement.getCredentialPlanId(), bindingId);
+		boolean certificate = servicePlans.isCertificatePlan(planId);
+
+		CredentialDetails<Object> current = findCredential(operations, name);
+		if (current != null && current.getCredentialType() == (certificate
+				? CredentialType.CERTIFICATE : CredentialType.JSON)) {
+			return;
+		}
+
+		List<CredentialPermission> permissions = placement.getAppGuid() != null
+				? Collections.singletonList(appPermission(placement.getAppGuid()))
+				: current != null
+						? operations.getPermissions(name).stream()
+								.filter(permission -> permission.getActor()
+										.getAuthType() == ActorType.APP)
+								.collect(Collectors.toList())
+						: Collections.emptyList();
+
+		if (certificate) {
+			CertificateCredential issued = certificateIssuer.issue(bindingId, instanceId);
+			replaceCredential(operations, name, current, permissions,
+					() -> writeCertificate(shard, name, issued, permissions));
+			transactionTemplate.execute(status -> userService.deleteUser(bindingId));
+		}
+		else {
+			User user = transactionTemplate.execute(status -> {
+				userService.deleteUser(bindingId);
+				return createUser(bindingId, instanceId);
+			});
+			try {
+				replaceCredential(operations, name, current, permissions,
+						() -> secureCredentials(shard, name, instanceId, user, permissions));
+			}
+			catch (RuntimeException e) {
+				transactionTemplate.execute(status -> userService.deleteUser(bindingId));
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Delete a binding's credential. A credential an earlier unbind already deleted
+	 * counts as deleted, so an unbind that failed after deleting it can be retried.
+	 */
+	private void deleteCredential(String shard, ServiceInstanceCredentialName name) {
+		try {
+			credHubShards.operations(shard).deleteByName(name);
+		}
+		catch (CredHubException e) {
+			if (!CredHubErrors.isNotFound(e)) {
+				throw e;
+			}
+		}
+	}
+
+	private CredentialDetails<Object> findCredential(CredHubOperations operations,
+			ServiceInstanceCredentialName name) {
+		try {
+			return operations.getByName(name, Object.class);
+		}
+		catch (CredHubException e) {
+			if (CredHubErrors.isNotFound(e)) {
+				return null;
+			}
+			throw e;
+		}
+	}
+
+	private void replaceCredential(CredHubOperations operations,
+			ServiceInstanceCredentialName name, CredentialDetails<Object> current,
+			List<CredentialPermission> permissions, Runnable write) {
+		if (current != null) {
+			operations.deleteByName(name);
+		}
+		try {
+			write.run();
+		}
+		catch (RuntimeException e) {
+			if (current != null) {
+				restoreCredential(operations, name, current, permissions, e);
+			}
+			throw e;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void restoreCredential(CredHubOperations operations,
+			ServiceInstanceCredentialName name, CredentialDetails<Object> previous,
+			List<CredentialPermission> permissions, RuntimeException failure) {
+		try {
+			if (previous.getValue() instanceof CertificateCredential) {
+				CertificateCredentialRequest.CertificateCredentialRequestBuilder request = CertificateCredentialRequest
+						.builder().overwrite(true).name(name)
+						.value((CertificateCredential) previous.getValue());
+				permissions.forEach(request::permission);
+				operations.write(request.build());
+			}
+			else {
+				JsonCredentialRequest.JsonCredentialRequestBuilder request = JsonCredentialRequest
+						.builder().overwrite(true).name(name)
+						.value(new JsonCredential((Map<String, ?>) previous.getValue()));
+				permissions.forEach(request::permission);
+				operations.write(request.build());
+			}
+		}
+		catch (RuntimeException e) {
+			failure.addSuppressed(e);
+			log.error("Failed to restore the CredHub credential " + name.getName(), e);
+		}
+	}
+
+	/**
+	 * Write the CredHub credential of a binding imported from another broker and return
+	 * its {@code credhub-ref}. The user carries the plain password and is {@code null}
+	 * for certificate plans.
+	 */
+	public String writeImportedCredential(ServiceInstance serviceInstance, String shard,
+			String bindingId, String appGuid, User user) {
+		ServiceInstanceCredentialName name = CredentialNames.forBinding(
+				serviceInstance.getInstanceId(), serviceInstance.getCredentialPlanId(),
+				bindingId);
+		List<CredentialPermission> permissions = appGuid != null
+				? Collections.singletonList(appPermission(appGuid))
+				: Collections.emptyList();
+		CredentialDetails<?> credential = user != null
+				? secureCredentials(shard, name, serviceInstance.getInstanceId(), user,
+						permissions)
+				: issueCertificate(shard, name, serviceInstance.getInstanceId(), bindingId,
+						permissions);
+		return credential.getName().getName();
+	}
+
+	private User createUser(String bindingId, String instanceId) {
+		return userService.createUser(bindingId, SecurityAuthorities.FULL_ACCESS.toString(),
+				instanceId);
+	}
+
+	private static CredentialPermission appPermission(String appGuid) {
+		return CredentialPermission.builder().app(appGuid).operations(READ).build();
+	}
+
+	private CredentialDetails<JsonCredential> secureCredentials(String shard,
+			ServiceInstanceCredentialName name, String instanceId, User user,
+			List<CredentialPermission> permissions) {
+		String uri = buildUri(instanceId);
 
 		Map<String, Object> credentials = new HashMap<>();
 		credentials.put(URI_KEY, uri);
 		credentials.put(USERNAME_KEY, user.getUsername());
 		credentials.put(PASSWORD_KEY, user.getPassword());
 
-		// @formatter:off
-		JsonCredentialRequest credhubRequest = JsonCredentialRequest.builder()
-			.overwrite(true)
-			.value(credentials)
-			.permission(CredentialPermission.builder().app(request.getBindResource().getAppGuid())
-			.operations(READ).build())
-			.name(ServiceInstanceCredentialName.builder()
-			.serviceBrokerName(request.getServiceInstanceId())
-			.serviceOfferingName(request.getPlanId())
-			.serviceBindingId(request.getBindingId())
-			.credentialName(request.getBindingId()).build())
-			.build();
-		// @formatter:on
+		JsonCredentialRequest.JsonCredentialRequestBuilder credhubRequest = JsonCredentialRequest
+				.builder()
+				.overwrite(true)
+				.value(credentials)
+				.name(name);
+		permissions.forEach(credhubRequest::permission);
+
+		return credHubShards.operations(shard).write(credhubRequest.build());
+	}
+
+	private CredentialDetails<CertificateCredential> issueCertificate(String shard,
+			ServiceInstanceCredentialName name, String instanceId, String bindingId,
+			List<CredentialPermission> permissions) {
+		return writeCertificate(shard, name,
+				certificateIssuer.issue(bindingId, instanceId), permissions);
+	}
+
+	private CredentialDetails<CertificateCredential> writeCertificate(String shard,
+			ServiceInstanceCredentialName name, CertificateCredential certificate,
+			List<CredentialPermission> permissions) {
+		CertificateCredentialRequest.CertificateCredentialRequestBuilder credhubRequest = CertificateCredentialRequest
+				.builder()
+				.overwrite(true)
+				.value(certificate)
+				.name(name);
+		permissions.forEach(credhubRequest::permission);
+
+		return credHubShards.operations(shard).write(credhubRequest.build());
+	}
 
-		return credHubOperations.write(credhubRequest);
+	private static String appGuid(CreateServiceInstanceBindingRequest request) {
+		return request.getBindResource() != null ? request.getBindResource().getAppGuid()
+				: null;
 	}
 
 	private String buildUri(String instanceId) {
@@ -161,9 +601,12 @@ public class CredhubServiceInstanceBindingService
 	}
 
 	private void saveBinding(CreateServiceInstanceBindingRequest request,
-			Map<String, Object> credentials) {
-		ServiceBinding serviceBinding = new ServiceBinding(request.getBindingId(),
-				request.getParameters(), credentials);
-		bindingRepository.save(serviceBinding);
+			ServiceInstance serviceInstance, String shard, Map<String, Object> credentials) {
+		// a reference from the saving session keeps Hibernate from selecting the
+		// detached instance again to check that it is not transient
+		transactionTemplate.execute(status -> bindingRepository.save(new ServiceBinding(
+				request.getBindingId(),
+				instanceRepository.getOne(serviceInstance.getInstanceId()),
+				appGuid(request), shard, request.getParameters(), credentials)));
 	}
 }
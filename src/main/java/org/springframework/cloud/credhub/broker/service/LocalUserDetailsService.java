@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.credhub.broker.service;
 
+import org.springframework.cloud.credhub.broker.datasource.ReadFromReplica;
 import org.springframework.cloud.credhub.broker.model.User;
 import org.springframework.cloud.credhub.broker.repository.UserRepository;
 import org.springframework.security.core.GrantedAuthority;
@@ -24,6 +25,8 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Collection;
 import java.util.stream.Collectors;
@@ -31,15 +34,32 @@ import java.util.stream.Collectors;
 @Service
 public class LocalUserDetailsService implements UserDetailsService {
 	private final UserRepository userRepository;
+	private final TransactionTemplate primaryTransaction;
 
-	public LocalUserDetailsService(UserRepository userRepository) {
+	public LocalUserDetailsService(UserRepository userRepository,
+			TransactionTemplate transactionTemplate) {
 		this.userRepository = userRepository;
+		this.primaryTransaction = new TransactionTemplate(
+				transactionTemplate.getTransactionManager());
+		this.primaryTransaction
+				.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
 	}
 
+	/**
+	 * Binding users are created right before the application first authenticates, so
+	 * a user a lagging replica does not know yet is looked up again on the primary,
+	 * in a new read-write transaction.
+	 */
 	@Override
+	@ReadFromReplica
 	public UserDetails loadUserByUsername(String username) {
 		User user = userRepository.findByUsername(username);
 
+		if (user == null) {
+			user = primaryTransaction
+					.execute(status -> userRepository.findByUsername(username));
+		}
+
 		if (user == null) {
 			throw new UsernameNotFoundException(username);
 		}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.cloud.servicebroker.model.catalog.Catalog;
+
+/**
+ * Resolves the plan ids published in the catalog to their names.
+ */
+public class ServicePlans {
+	public static final String STANDARD = "standard";
+	public static final String CERTIFICATE = "certificate";
+
+	private final Map<String, String> names = new HashMap<>();
+
+	public ServicePlans(Catalog catalog) {
+		catalog.getServiceDefinitions().forEach(definition -> definition.getPlans()
+				.forEach(plan -> names.put(plan.getId(), plan.getName())));
+	}
+
+	/**
+	 * The name of a plan, or the id itself if the plan is not in the catalog.
+	 */
+	public String nameOf(String planId) {
+		return names.getOrDefault(planId, planId);
+	}
+
+	public boolean contains(String planId) {
+		return names.containsKey(planId);
+	}
+
+	/**
+	 * The id of the plan with the given name, or {@code null} if there is none.
+	 */
+	public String idOf(String name) {
+		return names.entrySet().stream().filter(entry -> entry.getValue().equals(name))
+				.map(Map.Entry::getKey).findFirst().orElse(null);
+	}
+
+	public boolean isCertificatePlan(String planId) {
+		return CERTIFICATE.equals(names.get(planId));
+	}
+}
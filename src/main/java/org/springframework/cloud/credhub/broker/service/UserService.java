@@ -17,6 +17,8 @@
 package org.springframework.cloud.credhub.broker.service;
 
 import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.List;
 
 import org.springframework.cloud.credhub.broker.model.User;
 import org.springframework.cloud.credhub.broker.repository.UserRepository;
@@ -56,11 +58,44 @@ public class UserService {
 		return new User(username, password, authorities);
 	}
 
-	public void deleteUser(String username) {
-		User user = userRepository.findByUsername(username);
-		if (user != null) {
-			userRepository.deleteById(user.getId());
-		}
+	/**
+	 * A user ready to be saved, its password encoded. Bulk imports encode many of these
+	 * in parallel and save them in batches.
+	 */
+	public User encodedUser(String username, String password, String... authorities) {
+		return new User(username, passwordEncoder.encode(password), authorities);
+	}
+
+	public String newPassword() {
+		return generatePassword();
+	}
+
+	public List<User> saveUsers(Collection<User> users) {
+		return userRepository.saveAll(users);
+	}
+
+	public int deleteUser(String username) {
+		userRepository.deleteAuthoritiesByUsername(username);
+		return userRepository.deleteByUsername(username);
+	}
+
+	public int deleteUsers(Collection<String> usernames) {
+		userRepository.deleteAuthoritiesByUsernames(usernames);
+		return userRepository.deleteByUsernames(usernames);
+	}
+
+	public int deleteUsersForInstance(String instanceId) {
+		userRepository.deleteAuthoritiesByInstanceId(instanceId);
+		return userRepository.deleteByInstanceId(instanceId);
+	}
+
+	/**
+	 * Run the password generation and encoding paths without persisting anything, so
+	 * the random generator is seeded and the encoder is warm before the first bind.
+	 */
+	public void warmUp() {
+		String password = generatePassword();
+		passwordEncoder.matches(password, passwordEncoder.encode(password));
 	}
 
 	private User adminUser() {
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityNotFoundException;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * {@link JpaRepository} contract on top of the {@link EmbeddedStore}. Sorting and query
+ * by example are evaluated in memory by {@link EntityQueries}.
+ */
+abstract class EmbeddedRepositorySupport<T, ID> implements JpaRepository<T, ID> {
+	protected final EmbeddedStore store;
+
+	EmbeddedRepositorySupport(EmbeddedStore store) {
+		this.store = store;
+	}
+
+	protected abstract Map<ID, T> entities();
+
+	protected abstract ID idOf(T entity);
+
+	protected abstract T store(T entity);
+
+	protected abstract void remove(ID id);
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <S extends T> S save(S entity) {
+		return (S) store(entity);
+	}
+
+	@Override
+	public <S extends T> S saveAndFlush(S entity) {
+		return save(entity);
+	}
+
+	@Override
+	public <S extends T> List<S> saveAll(Iterable<S> entities) {
+		List<S> saved = new ArrayList<>();
+		entities.forEach(entity -> saved.add(save(entity)));
+		return saved;
+	}
+
+	@Override
+	public Optional<T> findById(ID id) {
+		return Optional.ofNullable(entities().get(id));
+	}
+
+	@Override
+	public T getOne(ID id) {
+		return findById(id).orElseThrow(() -> new EntityNotFoundException(String.valueOf(id)));
+	}
+
+	@Override
+	public boolean existsById(ID id) {
+		return entities().containsKey(id);
+	}
+
+	@Override
+	public List<T> findAll() {
+		return new ArrayList<>(entities().values());
+	}
+
+	@Override
+	public List<T> findAllById(Iterable<ID> ids) {
+		List<T> found = new ArrayList<>();
+		ids.forEach(id -> findById(id).ifPresent(found::add));
+		return found;
+	}
+
+	@Override
+	public List<T> findAll(Sort sort) {
+		return sorted(findAll(), sort);
+	}
+
+	@Override
+	public Page<T> findAll(Pageable pageable) {
+		return page(findAll(), pageable);
+	}
+
+	@Override
+	public long count() {
+		return entities().size();
+	}
+
+	@Override
+	public void deleteById(ID id) {
+		if (!existsById(id)) {
+			throw new EmptyResultDataAccessException(
+					String.format("No entity with id %s exists!", id), 1);
+		}
+		remove(id);
+	}
+
+	@Override
+	public void delete(T entity) {
+		remove(idOf(entity));
+	}
+
+	@Override
+	public void deleteAll(Iterable<? extends T> entities) {
+		entities.forEach(this::delete);
+	}
+
+	@Override
+	public void deleteInBatch(Iterable<T> entities) {
+		deleteAll(entities);
+	}
+
+	@Override
+	public void deleteAll() {
+		new ArrayList<>(entities().keySet()).forEach(this::remove);
+	}
+
+	@Override
+	public void deleteAllInBatch() {
+		deleteAll();
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public <S extends T> Optional<S> findOne(Example<S> example) {
+		List<S> found = findAll(example);
+		if (found.size() > 1) {
+			throw new IncorrectResultSizeDataAccessException(1, found.size());
+		}
+		return found.stream().findFirst();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <S extends T> List<S> findAll(Example<S> example) {
+		Predicate<T> matching = EntityQueries.matching(example);
+		return entities().values().stream()
+				.filter(entity -> example.getProbeType().isInstance(entity))
+				.filter(matching)
+				.map(entity -> (S) entity)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public <S extends T> List<S> findAll(Example<S> example, Sort sort) {
+		return sorted(findAll(example), sort);
+	}
+
+	@Override
+	public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable) {
+		return page(findAll(example), pageable);
+	}
+
+	@Override
+	public <S extends T> long count(Example<S> example) {
+		return findAll(example).size();
+	}
+
+	@Override
+	public <S extends T> boolean exists(Example<S> example) {
+		return !findAll(example).isEmpty();
+	}
+
+	private static <S> List<S> sorted(List<S> entities, Sort sort) {
+		if (sort.isSorted()) {
+			entities.sort(EntityQueries.comparator(sort));
+		}
+		return entities;
+	}
+
+	private static <S> Page<S> page(List<S> entities, Pageable pageable) {
+		if (pageable.isUnpaged()) {
+			return new PageImpl<>(entities);
+		}
+		List<S> content = sorted(entities, pageable.getSort()).stream()
+				.skip(pageable.getOffset()).limit(pageable.getPageSize())
+				.collect(Collectors.toList());
+		return new PageImpl<>(content, pageable, entities.size());
+	}
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.springframework.cloud.credhub.broker.model.ServiceBinding;
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.repository.BindingPlacement;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+public class EmbeddedServiceBindingRepository
+		extends EmbeddedRepositorySupport<ServiceBinding, String>
+		implements ServiceBindingRepository {
+
+	public EmbeddedServiceBindingRepository(EmbeddedStore store) {
+		super(store);
+	}
+
+	@Override
+	protected Map<String, ServiceBinding> entities() {
+		return store.bindings();
+	}
+
+	@Override
+	protected String idOf(ServiceBinding entity) {
+		return entity.getBindingId();
+	}
+
+	@Override
+	protected ServiceBinding store(ServiceBinding entity) {
+		return store.saveBinding(entity);
+	}
+
+	@Override
+	protected void remove(String id) {
+		store.deleteBinding(id);
+	}
+
+	@Override
+	public Optional<ServiceBinding> findWithDetailsByBindingId(String bindingId) {
+		return findById(bindingId);
+	}
+
+	@Override
+	public Optional<BindingPlacement> findPlacementByBindingId(String bindingId) {
+		return findById(bindingId)
+				.map(binding -> new Placement(binding, instance(binding)));
+	}
+
+	@Override
+	public int deleteParametersByBindingId(String bindingId) {
+		// parameters and credentials are stored with their binding
+		ServiceBinding binding = store.bindings().get(bindingId);
+		return binding != null && binding.getParameters() != null
+				? binding.getParameters().size() : 0;
+	}
+
+	@Override
+	public int deleteCredentialsByBindingId(String bindingId) {
+		ServiceBinding binding = store.bindings().get(bindingId);
+		return binding != null && binding.getCredentials() != null
+				? binding.getCredentials().size() : 0;
+	}
+
+	@Override
+	public int deleteByBindingId(String bindingId) {
+		if (store.bindings().containsKey(bindingId)) {
+			store.deleteBinding(bindingId);
+			return 1;
+		}
+		return 0;
+	}
+
+	@Override
+	public int deleteParametersByInstanceId(String instanceId) {
+		return store.bindingIds(instanceId).size();
+	}
+
+	@Override
+	public int deleteCredentialsByInstanceId(String instanceId) {
+		return store.bindingIds(instanceId).size();
+	}
+
+	@Override
+	public int deleteByInstanceId(String instanceId) {
+		List<String> ids = new ArrayList<>(store.bindingIds(instanceId));
+		store.deleteBindings(ids);
+		return ids.size();
+	}
+
+	/**
+	 * The embedded store was introduced after bindings referenced their instance.
+	 */
+	@Override
+	public int linkLegacyBindings(String instanceId, String instancePathPattern) {
+		return 0;
+	}
+
+	@Override
+	public List<String> findBindingIdsByInstanceId(String instanceId) {
+		return new ArrayList<>(store.bindingIds(instanceId));
+	}
+
+	@Override
+	public List<Object[]> findBindingUsersByInstanceId(String instanceId) {
+		return store.bindingIds(instanceId).stream()
+				.map(bindingId -> new Object[] { bindingId,
+						store.findUser(bindingId) != null ? bindingId : null })
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public List<String> findExistingBindingIds(Collection<String> bindingIds) {
+		return bindingIds.stream().filter(store.bindings()::containsKey)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public List<String> findCredhubShardsByInstanceId(String instanceId) {
+		return new ArrayList<>(store.bindingIds(instanceId).stream()
+				.map(store.bindings()::get)
+				.filter(Objects::nonNull)
+				.map(ServiceBinding::getCredhubShard)
+				.collect(Collectors.toCollection(LinkedHashSet::new)));
+	}
+
+	@Override
+	public Page<BindingPlacement> findPlacements(Pageable pageable) {
+		List<ServiceBinding> placed = store.bindings().values().stream()
+				.filter(binding -> binding.getServiceInstance() != null)
+				.sorted(Comparator.comparing(ServiceBinding::getBindingId))
+				.collect(Collectors.toList());
+		List<BindingPlacement> content = placed.stream()
+				.skip(pageable.getOffset())
+				.limit(pageable.getPageSize())
+				.map(binding -> new Placement(binding, instance(binding)))
+				.collect(Collectors.toList());
+		return new PageImpl<>(content, pageable, placed.size());
+	}
+
+	@Override
+	public Page<BindingPlacement> findPlacementsByAppGuid(String appGuid, Pageable pageable) {
+		return page(placements(store.bindingIdsForApp(appGuid)), pageable);
+	}
+
+	@Override
+	public Page<BindingPlacement> findPlacementsByInstanceId(String instanceId,
+			Pageable pageable) {
+		return page(placements(store.bindingIds(instanceId)), pageable);
+	}
+
+	@Override
+	public Page<BindingPlacement> findPlacementsByAppGuidAndInstanceId(String appGuid,
+			String instanceId, Pageable pageable) {
+		return page(placements(store.bindingIdsForApp(appGuid)).stream()
+				.filter(placement -> instanceId.equals(placement.getInstanceId()))
+				.collect(Collectors.toList()), pageable);
+	}
+
+	@Override
+	public List<BindingPlacement> findAllPlacementsByAppGuid(String appGuid) {
+		return placements(store.bindingIdsForApp(appGuid));
+	}
+
+	@Override
+	public int deleteParametersByBindingIds(Collection<String> bindingIds) {
+		return bindingIds.size();
+	}
+
+	@Override
+	public int deleteCredentialsByBindingIds(Collection<String> bindingIds) {
+		return bindingIds.size();
+	}
+
+	@Override
+	public int deleteByBindingIds(Collection<String> bindingIds) {
+		List<String> present = bindingIds.stream()
+				.filter(store.bindings()::containsKey)
+				.collect(Collectors.toList());
+		store.deleteBindings(present);
+		return present.size();
+	}
+
+	@Override
+	public List<Object[]> countByCredhubShard() {
+		Map<String, Long> counts = new HashMap<>();
+		store.bindings().values()
+				.forEach(binding -> counts.merge(binding.getCredhubShard(), 1L, Long::sum));
+		return counts.entrySet().stream()
+				.map(entry -> new Object[] { entry.getKey(), entry.getValue() })
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public List<Object[]> countByInstance() {
+		return store.instances().values().stream()
+				.map(instance -> new Object[] { instance.getInstanceId(), instance.getPlanId(),
+						(long) store.bindingIds(instance.getInstanceId()).size() })
+				.filter(row -> (long) row[2] > 0)
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public int updateCredhubShard(String bindingId, String shard) {
+		ServiceBinding binding = store.bindings().get(bindingId);
+		if (binding == null) {
+			return 0;
+		}
+		store.saveBinding(new ServiceBinding(binding.getBindingId(),
+				binding.getServiceInstance(), binding.getAppGuid(), shard, binding.getParameters(),
+				binding.getCredentials()));
+		return 1;
+	}
+
+	private List<BindingPlacement> placements(Collection<String> bindingIds) {
+		return bindingIds.stream()
+				.map(store.bindings()::get)
+				.filter(binding -> binding != null && binding.getServiceInstance() != null)
+				.sorted(Comparator.comparing(ServiceBinding::getBindingId))
+				.map(binding -> new Placement(binding, instance(binding)))
+				.collect(Collectors.toList());
+	}
+
+	private static Page<BindingPlacement> page(List<BindingPlacement> placements,
+			Pageable pageable) {
+		List<BindingPlacement> content = placements.stream()
+				.skip(pageable.getOffset())
+				.limit(pageable.getPageSize())
+				.collect(Collectors.toList());
+		return new PageImpl<>(content, pageable, placements.size());
+	}
+
+	private ServiceInstance instance(ServiceBinding binding) {
+		if (binding.getServiceInstance() == null) {
+			return null;
+		}
+		ServiceInstance instance = store.instances()
+				.get(binding.getServiceInstance().getInstanceId());
+		return instance != null ? instance : binding.getServiceInstance();
+	}
+
+	private static class Placement implements BindingPlacement {
+		private final ServiceBinding binding;
+		private final ServiceInstance instance;
+
+		Placement(ServiceBinding binding, ServiceInstance instance) {
+			this.binding = binding;
+			this.instance = instance;
+		}
+
+		@Override
+		public String getBindingId() {
+			return binding.getBindingId();
+		}
+
+		@Override
+		public String getInstanceId() {
+			return instance != null ? instance.getInstanceId() : null;
+		}
+
+		@Override
+		public String getPlanId() {
+			return instance != null ? instance.getPlanId() : null;
+		}
+
+		@Override
+		public String getCredentialPlanId() {
+			return instance != null ? instance.getCredentialPlanId() : null;
+		}
+
+		@Override
+		public String getAppGuid() {
+			return binding.getAppGuid();
+		}
+
+		@Override
+		public String getCredhubShard() {
+			return binding.getCredhubShard();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.repository.ServiceInstanceRepository;
+
+public class EmbeddedServiceInstanceRepository
+		extends EmbeddedRepositorySupport<ServiceInstance, String>
+		implements ServiceInstanceRepository {
+
+	public EmbeddedServiceInstanceRepository(EmbeddedStore store) {
+		super(store);
+	}
+
+	@Override
+	protected Map<String, ServiceInstance> entities() {
+		return store.instances();
+	}
+
+	@Override
+	protected String idOf(ServiceInstance entity) {
+		return entity.getInstanceId();
+	}
+
+	@Override
+	protected ServiceInstance store(ServiceInstance entity) {
+		return store.saveInstance(entity);
+	}
+
+	@Override
+	protected void remove(String id) {
+		store.deleteInstance(id);
+	}
+
+	@Override
+	public Optional<ServiceInstance> findWithParametersByInstanceId(String instanceId) {
+		return findById(instanceId);
+	}
+
+	@Override
+	public int deleteParametersByInstanceId(String instanceId) {
+		// parameters are stored with their instance
+		ServiceInstance instance = store.instances().get(instanceId);
+		return instance != null && instance.getParameters() != null
+				? instance.getParameters().size() : 0;
+	}
+
+	@Override
+	public int deleteByInstanceId(String instanceId) {
+		if (store.instances().containsKey(instanceId)) {
+			store.deleteInstance(instanceId);
+			return 1;
+		}
+		return 0;
+	}
+}
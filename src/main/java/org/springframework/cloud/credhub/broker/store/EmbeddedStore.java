@@ -0,0 +1,354 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.credhub.broker.model.ServiceBinding;
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.model.User;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Durable in-memory store for service instances, bindings and users. Every mutation is
+ * appended to the {@link StoreLog} under one lock and applied to the in-memory index
+ * once its group fsync completes. Completions run in log order, so index order matches
+ * log order, and a change that fails to persist is never visible. Periodic snapshots let
+ * the log be compacted and keep recovery to one snapshot load plus a short log replay.
+ */
+public class EmbeddedStore implements Closeable {
+	private static final Log log = LogFactory.getLog(EmbeddedStore.class);
+
+	private final Path directory;
+
+	private final Map<String, ServiceInstance> instances = new ConcurrentHashMap<>();
+	private final Map<String, ServiceBinding> bindings = new ConcurrentHashMap<>();
+	private final Map<String, Set<String>> bindingsByInstance = new ConcurrentHashMap<>();
+	private final Map<String, Set<String>> bindingsByApp = new ConcurrentHashMap<>();
+	private final Map<Long, User> users = new ConcurrentHashMap<>();
+	private final Map<String, Long> usersByName = new ConcurrentHashMap<>();
+	private final AtomicLong userIds = new AtomicLong();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final ReentrantLock snapshotLock = new ReentrantLock();
+	private StoreLog storeLog;
+
+	public EmbeddedStore(Path directory) {
+		this.directory = directory;
+	}
+
+	public void open() {
+		long started = System.nanoTime();
+		try {
+			Files.createDirectories(directory);
+			long snapshotSegment = SnapshotFile.read(directory,
+					in -> applyInstance(StoreCodec.readInstance(in)),
+					in -> applyBinding(StoreCodec.readBinding(in, instances)),
+					in -> applyUser(StoreCodec.readUser(in)));
+
+			List<Path> segments = segmentsAfter(snapshotSegment);
+			for (int i = 0; i < segments.size(); i++) {
+				StoreLog.replay(segments.get(i), i == segments.size() - 1, this::replay);
+			}
+
+			long nextSegment = segments.isEmpty() ? snapshotSegment + 1
+					: StoreLog.segmentNumber(segments.get(segments.size() - 1)) + 1;
+			storeLog = new StoreLog(directory, nextSegment);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		log.info(String.format("Recovered %d instances, %d bindings and %d users in %d ms",
+				instances.size(), bindings.size(), users.size(),
+				(System.nanoTime() - started) / 1_000_000));
+	}
+
+	private List<Path> segmentsAfter(long snapshotSegment) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> StoreLog.segmentNumber(file) > snapshotSegment)
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	private void replay(ByteBuffer in) {
+		byte type = in.get();
+		switch (type) {
+		case StoreCodec.PUT_INSTANCE:
+			applyInstance(StoreCodec.readInstance(in));
+			break;
+		case StoreCodec.DELETE_INSTANCE:
+			instances.remove(StoreCodec.readString(in));
+			break;
+		case StoreCodec.PUT_BINDING:
+			applyBinding(StoreCodec.readBinding(in, instances));
+			break;
+		case StoreCodec.DELETE_BINDING:
+			removeBindingFromIndex(StoreCodec.readString(in));
+			break;
+		case StoreCodec.PUT_USER:
+			applyUser(StoreCodec.readUser(in));
+			break;
+		case StoreCodec.DELETE_USER:
+			removeUserFromIndex(in.getLong());
+			break;
+		default:
+			throw new IllegalStateException("Unknown store record type " + type);
+		}
+	}
+
+	public Map<String, ServiceInstance> instances() {
+		return Collections.unmodifiableMap(instances);
+	}
+
+	public Map<String, ServiceBinding> bindings() {
+		return Collections.unmodifiableMap(bindings);
+	}
+
+	public Map<Long, User> users() {
+		return Collections.unmodifiableMap(users);
+	}
+
+	public Collection<String> bindingIds(String instanceId) {
+		Set<String> ids = bindingsByInstance.get(instanceId);
+		return ids != null ? new ArrayList<>(ids) : Collections.emptyList();
+	}
+
+	public Collection<String> bindingIdsForApp(String appGuid) {
+		Set<String> ids = bindingsByApp.get(appGuid);
+		return ids != null ? new ArrayList<>(ids) : Collections.emptyList();
+	}
+
+	public User findUser(String username) {
+		Long id = usersByName.get(username);
+		return id != null ? users.get(id) : null;
+	}
+
+	public ServiceInstance saveInstance(ServiceInstance instance) {
+		mutate(StoreCodec.putInstance(instance), () -> applyInstance(instance));
+		return instance;
+	}
+
+	public void deleteInstance(String instanceId) {
+		mutate(StoreCodec.delete(StoreCodec.DELETE_INSTANCE, instanceId),
+				() -> instances.remove(instanceId));
+	}
+
+	public ServiceBinding saveBinding(ServiceBinding binding) {
+		mutate(StoreCodec.putBinding(binding), () -> applyBinding(binding));
+		return binding;
+	}
+
+	public void deleteBinding(String bindingId) {
+		mutate(StoreCodec.delete(StoreCodec.DELETE_BINDING, bindingId),
+				() -> removeBindingFromIndex(bindingId));
+	}
+
+	public void deleteBindings(Collection<String> bindingIds) {
+		mutate(bindingIds.stream()
+				.map(id -> StoreCodec.delete(StoreCodec.DELETE_BINDING, id))
+				.collect(Collectors.toList()),
+				() -> bindingIds.forEach(this::removeBindingFromIndex));
+	}
+
+	public User saveUser(User user) {
+		User stored = user.getId() != null ? user
+				: StoreCodec.withId(user, userIds.incrementAndGet());
+		mutate(StoreCodec.putUser(stored), () -> applyUser(stored));
+		return stored;
+	}
+
+	public void deleteUser(long id) {
+		mutate(StoreCodec.deleteUser(id), () -> removeUserFromIndex(id));
+	}
+
+	public void deleteUsers(Collection<Long> ids) {
+		mutate(ids.stream().map(StoreCodec::deleteUser).collect(Collectors.toList()),
+				() -> ids.forEach(this::removeUserFromIndex));
+	}
+
+	private void mutate(byte[] record, Runnable apply) {
+		mutate(Collections.singletonList(record), apply);
+	}
+
+	/**
+	 * Append the records of a change as one unit and apply it once they are durable; the
+	 * records share the group fsync of the writer thread. The writer completes records
+	 * in log order, which is the order changes are applied in.
+	 */
+	private void mutate(List<byte[]> records, Runnable apply) {
+		if (records.isEmpty()) {
+			return;
+		}
+		CompletableFuture<Void> applied;
+		lock.lock();
+		try {
+			CompletableFuture<?>[] durable = records.stream().map(storeLog::append)
+					.toArray(CompletableFuture[]::new);
+			applied = CompletableFuture.allOf(durable).thenRun(() -> applyLocked(apply));
+		}
+		finally {
+			lock.unlock();
+		}
+		try {
+			applied.join();
+		}
+		catch (CompletionException e) {
+			throw new IllegalStateException("Failed to persist store record", e.getCause());
+		}
+	}
+
+	private void applyLocked(Runnable apply) {
+		lock.lock();
+		try {
+			apply.run();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void applyInstance(ServiceInstance instance) {
+		instances.put(instance.getInstanceId(), instance);
+	}
+
+	private void applyBinding(ServiceBinding binding) {
+		ServiceBinding previous = bindings.put(binding.getBindingId(), binding);
+		if (previous != null) {
+			unindex(previous);
+		}
+		if (binding.getServiceInstance() != null) {
+			bindingsByInstance.computeIfAbsent(binding.getServiceInstance().getInstanceId(),
+					id -> ConcurrentHashMap.newKeySet()).add(binding.getBindingId());
+		}
+		if (binding.getAppGuid() != null) {
+			bindingsByApp.computeIfAbsent(binding.getAppGuid(),
+					id -> ConcurrentHashMap.newKeySet()).add(binding.getBindingId());
+		}
+	}
+
+	private void removeBindingFromIndex(String bindingId) {
+		ServiceBinding removed = bindings.remove(bindingId);
+		if (removed != null) {
+			unindex(removed);
+		}
+	}
+
+	private void unindex(ServiceBinding binding) {
+		if (binding.getServiceInstance() != null) {
+			unindex(bindingsByInstance, binding.getServiceInstance().getInstanceId(),
+					binding.getBindingId());
+		}
+		if (binding.getAppGuid() != null) {
+			unindex(bindingsByApp, binding.getAppGuid(), binding.getBindingId());
+		}
+	}
+
+	private static void unindex(Map<String, Set<String>> index, String key,
+			String bindingId) {
+		index.computeIfPresent(key, (id, ids) -> {
+			ids.remove(bindingId);
+			return ids.isEmpty() ? null : ids;
+		});
+	}
+
+	private void applyUser(User user) {
+		users.put(user.getId(), user);
+		usersByName.put(user.getUsername(), user.getId());
+		userIds.accumulateAndGet(user.getId(), Math::max);
+	}
+
+	private void removeUserFromIndex(long id) {
+		User removed = users.remove(id);
+		if (removed != null) {
+			usersByName.remove(removed.getUsername(), id);
+		}
+	}
+
+	/**
+	 * Write a snapshot of the current state and compact the log segments it covers. The
+	 * rotation completes after every earlier record has been applied; the state is then
+	 * encoded under the lock, so no entity changes while it is copied. Changes from the
+	 * new segment the copy may already include are replayed again on recovery, which
+	 * leaves the same state.
+	 */
+	@Scheduled(initialDelayString = "${broker.store.snapshot-interval:300000}",
+			fixedDelayString = "${broker.store.snapshot-interval:300000}")
+	public void snapshot() {
+		snapshotLock.lock();
+		try {
+			CompletableFuture<Long> rotation;
+			lock.lock();
+			try {
+				rotation = storeLog.rotate();
+			}
+			finally {
+				lock.unlock();
+			}
+			long segment = rotation.join();
+
+			byte[] body;
+			lock.lock();
+			try {
+				body = SnapshotFile.encode(instances.values(), bindings.values(),
+						users.values());
+			}
+			finally {
+				lock.unlock();
+			}
+			SnapshotFile.write(directory, segment, body);
+			StoreLog.deleteSegmentsUpTo(directory, segment);
+			SnapshotFile.deleteOlderThan(directory, segment);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		finally {
+			snapshotLock.unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			snapshot();
+		}
+		finally {
+			storeLog.close();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("broker.store")
+@Getter
+@Setter
+public class EmbeddedStoreProperties {
+	/**
+	 * Where instances, bindings and users are kept: {@code jpa} for the configured
+	 * datasource, {@code embedded} for the local durable store.
+	 */
+	private String mode = "jpa";
+
+	/**
+	 * Directory holding the embedded store's log segments and snapshots.
+	 */
+	private String path = "broker-store";
+
+	/**
+	 * Milliseconds between snapshots, after which the covered log is compacted.
+	 */
+	private long snapshotInterval = 300000;
+}
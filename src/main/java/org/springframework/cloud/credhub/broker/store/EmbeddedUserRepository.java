@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.springframework.cloud.credhub.broker.model.User;
+import org.springframework.cloud.credhub.broker.repository.UserRepository;
+
+public class EmbeddedUserRepository extends EmbeddedRepositorySupport<User, Long>
+		implements UserRepository {
+
+	public EmbeddedUserRepository(EmbeddedStore store) {
+		super(store);
+	}
+
+	@Override
+	protected Map<Long, User> entities() {
+		return store.users();
+	}
+
+	@Override
+	protected Long idOf(User entity) {
+		return entity.getId();
+	}
+
+	@Override
+	protected User store(User entity) {
+		return store.saveUser(entity);
+	}
+
+	@Override
+	protected void remove(Long id) {
+		store.deleteUser(id);
+	}
+
+	@Override
+	public User findByUsername(String username) {
+		return store.findUser(username);
+	}
+
+	@Override
+	public int deleteAuthoritiesByUsername(String username) {
+		// authorities are stored with their user
+		User user = store.findUser(username);
+		return user != null ? user.getAuthorities().size() : 0;
+	}
+
+	@Override
+	public int deleteByUsername(String username) {
+		User user = store.findUser(username);
+		if (user == null) {
+			return 0;
+		}
+		store.deleteUser(user.getId());
+		return 1;
+	}
+
+	@Override
+	public int deleteAuthoritiesByUsernames(Collection<String> usernames) {
+		return (int) usernames.stream()
+				.map(store::findUser)
+				.filter(Objects::nonNull)
+				.mapToLong(user -> user.getAuthorities().size())
+				.sum();
+	}
+
+	@Override
+	public int deleteByUsernames(Collection<String> usernames) {
+		List<Long> ids = usernames.stream()
+				.map(store::findUser)
+				.filter(Objects::nonNull)
+				.map(User::getId)
+				.collect(Collectors.toList());
+		store.deleteUsers(ids);
+		return ids.size();
+	}
+
+	@Override
+	public int deleteAuthoritiesByInstanceId(String instanceId) {
+		return (int) store.bindingIds(instanceId).stream()
+				.map(store::findUser)
+				.filter(Objects::nonNull)
+				.mapToLong(user -> user.getAuthorities().size())
+				.sum();
+	}
+
+	@Override
+	public int deleteByInstanceId(String instanceId) {
+		List<Long> ids = store.bindingIds(instanceId).stream()
+				.map(store::findUser)
+				.filter(Objects::nonNull)
+				.map(User::getId)
+				.collect(Collectors.toList());
+		store.deleteUsers(ids);
+		return ids.size();
+	}
+}
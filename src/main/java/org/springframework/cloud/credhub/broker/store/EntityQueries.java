@@ -0,0 +1,172 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import javax.persistence.Transient;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.ExampleMatcherAccessor;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Sorting and query by example over entities held in memory. Like the JPA repositories,
+ * both work on the persistent fields of the entities; query by example compares simple
+ * values and nested entities and skips collections and maps.
+ */
+final class EntityQueries {
+	private EntityQueries() {
+	}
+
+	static <T> Comparator<T> comparator(Sort sort) {
+		Comparator<T> comparator = (left, right) -> 0;
+		for (Sort.Order order : sort) {
+			comparator = comparator.thenComparing(comparator(order));
+		}
+		return comparator;
+	}
+
+	private static <T> Comparator<T> comparator(Sort.Order order) {
+		Comparator<Object> values = order.isIgnoreCase()
+				? Comparator.comparing(value -> value.toString().toLowerCase())
+				: EntityQueries::compare;
+		if (order.isDescending()) {
+			values = values.reversed();
+		}
+		values = order.getNullHandling() == Sort.NullHandling.NULLS_LAST
+				? Comparator.nullsLast(values) : Comparator.nullsFirst(values);
+		Comparator<Object> byValue = values;
+		return (left, right) -> byValue.compare(value(left, order.getProperty()),
+				value(right, order.getProperty()));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compare(Object left, Object right) {
+		if (left instanceof Comparable) {
+			return ((Comparable) left).compareTo(right);
+		}
+		return left.toString().compareTo(right.toString());
+	}
+
+	private static Object value(Object entity, String path) {
+		Object value = entity;
+		for (String property : path.split("\\.")) {
+			if (value == null) {
+				return null;
+			}
+			value = new DirectFieldAccessor(value).getPropertyValue(property);
+		}
+		return value;
+	}
+
+	static <T> Predicate<T> matching(Example<? extends T> example) {
+		ExampleMatcherAccessor matcher = new ExampleMatcherAccessor(example.getMatcher());
+		List<Predicate<Object>> predicates = new ArrayList<>();
+		collect(example.getProbe(), "", matcher, predicates,
+				new IdentityHashMap<>());
+		boolean all = example.getMatcher().isAllMatching();
+		return entity -> predicates.isEmpty()
+				|| (all ? predicates.stream().allMatch(predicate -> predicate.test(entity))
+						: predicates.stream().anyMatch(predicate -> predicate.test(entity)));
+	}
+
+	private static void collect(Object probe, String prefix, ExampleMatcherAccessor matcher,
+			List<Predicate<Object>> predicates, Map<Object, Boolean> visited) {
+		if (visited.put(probe, Boolean.TRUE) != null) {
+			return;
+		}
+		for (Field field : persistentFields(probe.getClass())) {
+			String path = prefix + field.getName();
+			if (matcher.isIgnoredPath(path)
+					|| Collection.class.isAssignableFrom(field.getType())
+					|| Map.class.isAssignableFrom(field.getType())) {
+				continue;
+			}
+			ReflectionUtils.makeAccessible(field);
+			Optional<Object> transformed = matcher.getValueTransformerForPath(path)
+					.apply(Optional.ofNullable(ReflectionUtils.getField(field, probe)));
+			Object expected = transformed.orElse(null);
+			if (expected == null) {
+				if (matcher.getNullHandler() == ExampleMatcher.NullHandler.INCLUDE) {
+					predicates.add(entity -> value(entity, path) == null);
+				}
+			}
+			else if (BeanUtils.isSimpleValueType(expected.getClass())) {
+				predicates.add(entity -> matches(expected, value(entity, path), path,
+						matcher));
+			}
+			else {
+				collect(expected, path + ".", matcher, predicates, visited);
+			}
+		}
+	}
+
+	private static boolean matches(Object expected, Object actual, String path,
+			ExampleMatcherAccessor matcher) {
+		if (actual == null) {
+			return false;
+		}
+		if (!(expected instanceof String)) {
+			return expected.equals(actual);
+		}
+		String probe = (String) expected;
+		String value = actual.toString();
+		boolean ignoreCase = matcher.isIgnoreCaseForPath(path);
+		if (ignoreCase) {
+			probe = probe.toLowerCase();
+			value = value.toLowerCase();
+		}
+		switch (matcher.getStringMatcherForPath(path)) {
+		case STARTING:
+			return value.startsWith(probe);
+		case ENDING:
+			return value.endsWith(probe);
+		case CONTAINING:
+			return value.contains(probe);
+		case REGEX:
+			return Pattern.compile((String) expected,
+					ignoreCase ? Pattern.CASE_INSENSITIVE : 0)
+					.matcher(actual.toString()).matches();
+		default:
+			return value.equals(probe);
+		}
+	}
+
+	private static List<Field> persistentFields(Class<?> type) {
+		List<Field> fields = new ArrayList<>();
+		ReflectionUtils.doWithFields(type, fields::add,
+				field -> !Modifier.isStatic(field.getModifiers())
+						&& !Modifier.isTransient(field.getModifiers())
+						&& !field.isAnnotationPresent(Transient.class));
+		return fields;
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.springframework.cloud.credhub.broker.model.ServiceBinding;
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.model.User;
+
+/**
+ * Full copy of the store covering every log segment up to and including the one it is
+ * numbered after. Snapshots are written through a memory mapping to a temporary file
+ * and atomically renamed, so a snapshot file is either complete or absent.
+ */
+final class SnapshotFile {
+	private static final int MAGIC = 0x43534231;
+	private static final int VERSION = 1;
+	private static final String PREFIX = "snapshot-";
+	private static final String SUFFIX = ".snap";
+
+	private SnapshotFile() {
+	}
+
+	/**
+	 * Encode the entities making up a snapshot, ready to be written.
+	 */
+	static byte[] encode(Collection<ServiceInstance> instances,
+			Collection<ServiceBinding> bindings, Collection<User> users) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				64 + (instances.size() + bindings.size() + users.size()) * 256);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(instances.size());
+			for (ServiceInstance instance : instances) {
+				StoreCodec.writeInstance(out, instance);
+			}
+			out.writeInt(bindings.size());
+			for (ServiceBinding binding : bindings) {
+				StoreCodec.writeBinding(out, binding);
+			}
+			out.writeInt(users.size());
+			for (User user : users) {
+				StoreCodec.writeUser(out, user);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	static void write(Path directory, long segment, byte[] body) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(body);
+
+		Path target = path(directory, segment);
+		Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+		int headerSize = Integer.BYTES * 3 + Long.BYTES;
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					headerSize + body.length);
+			buffer.putInt(MAGIC).putInt(VERSION).putLong(segment)
+					.putInt((int) crc.getValue()).put(body);
+			buffer.force();
+		}
+		Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Load the newest snapshot into the given consumers.
+	 * @return the segment the snapshot covers, or {@code -1} if there is none
+	 */
+	static long read(Path directory, Consumer<ByteBuffer> instances,
+			Consumer<ByteBuffer> bindings, Consumer<ByteBuffer> users)
+			throws IOException {
+		Optional<Path> latest = latest(directory);
+		if (!latest.isPresent()) {
+			return -1;
+		}
+
+		try (FileChannel channel = FileChannel.open(latest.get(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+			int magic = buffer.getInt();
+			int version = buffer.getInt();
+			if (magic != MAGIC || version != VERSION) {
+				throw new IOException("Unsupported snapshot " + latest.get());
+			}
+			long segment = buffer.getLong();
+			int checksum = buffer.getInt();
+			ByteBuffer body = buffer.slice();
+			byte[] bytes = new byte[body.remaining()];
+			body.duplicate().get(bytes);
+			CRC32 crc = new CRC32();
+			crc.update(bytes);
+			if ((int) crc.getValue() != checksum) {
+				throw new IOException("Corrupt snapshot " + latest.get());
+			}
+
+			ByteBuffer in = ByteBuffer.wrap(bytes);
+			readSection(in, instances);
+			readSection(in, bindings);
+			readSection(in, users);
+			return segment;
+		}
+	}
+
+	private static void readSection(ByteBuffer in, Consumer<ByteBuffer> consumer) {
+		int count = in.getInt();
+		for (int i = 0; i < count; i++) {
+			consumer.accept(in);
+		}
+	}
+
+	static void deleteOlderThan(Path directory, long segment) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				long number = number(file);
+				if (number >= 0 && number < segment) {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+	}
+
+	private static Optional<Path> latest(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> number(file) >= 0)
+					.max((left, right) -> Long.compare(number(left), number(right)));
+		}
+	}
+
+	private static Path path(Path directory, long segment) {
+		return directory.resolve(String.format("%s%020d%s", PREFIX, segment, SUFFIX));
+	}
+
+	private static long number(Path path) {
+		String name = path.getFileName().toString();
+		if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+			return -1;
+		}
+		return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+	}
+}
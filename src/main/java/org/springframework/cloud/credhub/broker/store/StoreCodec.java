@@ -0,0 +1,218 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.cloud.credhub.broker.model.ServiceBinding;
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.model.User;
+
+/**
+ * Binary encoding of the records kept in the log and in snapshots. Every record
+ * starts with its type; map values are stored as strings, as the JPA mapping does.
+ */
+final class StoreCodec {
+	static final byte PUT_INSTANCE = 1;
+	static final byte DELETE_INSTANCE = 2;
+	static final byte PUT_BINDING = 3;
+	static final byte DELETE_BINDING = 4;
+	static final byte PUT_USER = 5;
+	static final byte DELETE_USER = 6;
+
+	private StoreCodec() {
+	}
+
+	static byte[] putInstance(ServiceInstance instance) {
+		return encode(out -> {
+			out.writeByte(PUT_INSTANCE);
+			writeInstance(out, instance);
+		});
+	}
+
+	static byte[] putBinding(ServiceBinding binding) {
+		return encode(out -> {
+			out.writeByte(PUT_BINDING);
+			writeBinding(out, binding);
+		});
+	}
+
+	static byte[] putUser(User user) {
+		return encode(out -> {
+			out.writeByte(PUT_USER);
+			writeUser(out, user);
+		});
+	}
+
+	static byte[] delete(byte type, String key) {
+		return encode(out -> {
+			out.writeByte(type);
+			writeString(out, key);
+		});
+	}
+
+	static byte[] deleteUser(long id) {
+		return encode(out -> {
+			out.writeByte(DELETE_USER);
+			out.writeLong(id);
+		});
+	}
+
+	static void writeInstance(DataOutputStream out, ServiceInstance instance)
+			throws IOException {
+		writeString(out, instance.getInstanceId());
+		writeString(out, instance.getServiceDefinitionId());
+		writeString(out, instance.getPlanId());
+		writeMap(out, instance.getParameters());
+		writeString(out, instance.getCredentialPlanId());
+	}
+
+	static void writeBinding(DataOutputStream out, ServiceBinding binding)
+			throws IOException {
+		writeString(out, binding.getBindingId());
+		writeString(out, binding.getServiceInstance() != null
+				? binding.getServiceInstance().getInstanceId() : null);
+		writeString(out, binding.getAppGuid());
+		writeString(out, binding.getCredhubShard());
+		writeMap(out, binding.getParameters());
+		writeMap(out, binding.getCredentials());
+	}
+
+	static void writeUser(DataOutputStream out, User user) throws IOException {
+		out.writeLong(user.getId());
+		writeString(out, user.getUsername());
+		writeString(out, user.getPassword());
+		out.writeInt(user.getAuthorities().size());
+		for (String authority : user.getAuthorities()) {
+			writeString(out, authority);
+		}
+	}
+
+	static ServiceInstance readInstance(ByteBuffer in) {
+		String instanceId = readString(in);
+		String serviceDefinitionId = readString(in);
+		String planId = readString(in);
+		Map<String, Object> parameters = readMap(in);
+		String credentialPlanId = readString(in);
+		return new ServiceInstance(instanceId, serviceDefinitionId, planId,
+				credentialPlanId, parameters);
+	}
+
+	/**
+	 * @param instances the instances known so far, used to resolve the binding's owner
+	 */
+	static ServiceBinding readBinding(ByteBuffer in, Map<String, ServiceInstance> instances) {
+		String bindingId = readString(in);
+		String instanceId = readString(in);
+		String appGuid = readString(in);
+		String shard = readString(in);
+		ServiceInstance instance = null;
+		if (instanceId != null) {
+			instance = instances.get(instanceId);
+			if (instance == null) {
+				instance = new ServiceInstance(instanceId, null, null, new LinkedHashMap<>());
+			}
+		}
+		return new ServiceBinding(bindingId, instance, appGuid, shard, readMap(in),
+				readMap(in));
+	}
+
+	static User readUser(ByteBuffer in) {
+		long id = in.getLong();
+		String username = readString(in);
+		String password = readString(in);
+		String[] authorities = new String[in.getInt()];
+		for (int i = 0; i < authorities.length; i++) {
+			authorities[i] = readString(in);
+		}
+		return withId(new User(username, password, authorities), id);
+	}
+
+	static User withId(User user, long id) {
+		new DirectFieldAccessor(user).setPropertyValue("id", id);
+		return user;
+	}
+
+	static String readString(ByteBuffer in) {
+		int length = in.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static void writeMap(DataOutputStream out, Map<String, Object> map)
+			throws IOException {
+		if (map == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(map.size());
+		for (Map.Entry<String, Object> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue() != null ? entry.getValue().toString() : null);
+		}
+	}
+
+	private static Map<String, Object> readMap(ByteBuffer in) {
+		int size = in.getInt();
+		if (size < 0) {
+			return null;
+		}
+		Map<String, Object> map = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++) {
+			map.put(readString(in), readString(in));
+		}
+		return map;
+	}
+
+	private static byte[] encode(Encoder encoder) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			encoder.encode(out);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	@FunctionalInterface
+	interface Encoder {
+		void encode(DataOutputStream out) throws IOException;
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log split in numbered segments. Appends are handed to a single writer
+ * thread which writes everything queued so far and then issues one fsync for the whole
+ * group before completing the appenders' futures.
+ *
+ * <p>Every record is framed with its length and CRC32 so a torn write at the end of the
+ * last segment is detected, and cut off, on recovery. A failed write is cut off right
+ * away; if that fails too, the log refuses further appends.
+ */
+class StoreLog implements Closeable {
+	private static final int HEADER_SIZE = Integer.BYTES * 2;
+	private static final String SEGMENT_PREFIX = "log-";
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private static final Entry STOP = new Entry(new byte[0]);
+
+	private final Path directory;
+	private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+	private final Thread writer;
+
+	private FileChannel channel;
+	private long segment;
+	private volatile boolean closed;
+	private volatile IOException failure;
+
+	StoreLog(Path directory, long segment) throws IOException {
+		this.directory = directory;
+		this.segment = segment;
+		this.channel = open(segment);
+		this.writer = new Thread(this::writeLoop, "store-log-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * @return a future completed once the record is durable
+	 */
+	CompletableFuture<Void> append(byte[] record) {
+		if (closed) {
+			throw new IllegalStateException("Store log is closed");
+		}
+		if (failure != null) {
+			throw new IllegalStateException("Store log failed", failure);
+		}
+		Entry entry = new Entry(record);
+		queue.add(entry);
+		return entry.future;
+	}
+
+	/**
+	 * Close the current segment after every record appended so far and continue in a
+	 * new one.
+	 * @return a future completed with the number of the closed segment
+	 */
+	CompletableFuture<Long> rotate() {
+		Entry entry = new Entry(null);
+		queue.add(entry);
+		return entry.future.thenApply(ignored -> entry.closedSegment);
+	}
+
+	private void writeLoop() {
+		List<Entry> batch = new ArrayList<>();
+		boolean stopping = false;
+		while (!stopping) {
+			try {
+				batch.add(queue.take());
+			}
+			catch (InterruptedException e) {
+				continue;
+			}
+			queue.drainTo(batch);
+			stopping = batch.remove(STOP);
+			writeBatch(batch);
+			batch.clear();
+		}
+
+		queue.drainTo(batch);
+		IllegalStateException closedException = new IllegalStateException("Store log is closed");
+		batch.forEach(entry -> entry.future.completeExceptionally(closedException));
+	}
+
+	private void writeBatch(List<Entry> batch) {
+		if (failure != null) {
+			batch.forEach(entry -> entry.future.completeExceptionally(failure));
+			return;
+		}
+		List<Entry> pending = new ArrayList<>();
+		long durable = -1;
+		try {
+			durable = channel.position();
+			for (Entry entry : batch) {
+				if (entry.record == null) {
+					channel.force(false);
+					complete(pending);
+					channel.close();
+					entry.closedSegment = segment;
+					channel = open(++segment);
+					durable = channel.position();
+					entry.future.complete(null);
+				}
+				else {
+					write(entry.record);
+					pending.add(entry);
+				}
+			}
+			channel.force(false);
+			complete(pending);
+		}
+		catch (IOException | RuntimeException e) {
+			discard(durable, e);
+			for (Entry entry : batch) {
+				entry.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Cut off the records of a failed batch, so none of them is recovered after the
+	 * appenders were told it failed.
+	 */
+	private void discard(long durable, Exception cause) {
+		try {
+			if (durable < 0) {
+				throw new IOException("Unknown log position", cause);
+			}
+			channel.truncate(durable);
+			channel.force(false);
+		}
+		catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	private void write(byte[] record) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(record.length).putInt((int) crc.getValue()).flip();
+		ByteBuffer[] buffers = { header, ByteBuffer.wrap(record) };
+		while (buffers[1].hasRemaining()) {
+			channel.write(buffers);
+		}
+	}
+
+	private static void complete(List<Entry> entries) {
+		entries.forEach(entry -> entry.future.complete(null));
+		entries.clear();
+	}
+
+	private FileChannel open(long number) throws IOException {
+		return FileChannel.open(segmentPath(directory, number), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		queue.add(STOP);
+		try {
+			writer.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		channel.close();
+	}
+
+	static Path segmentPath(Path directory, long number) {
+		return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+	}
+
+	static long segmentNumber(Path path) {
+		String name = path.getFileName().toString();
+		if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+			return -1;
+		}
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+				name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	/**
+	 * Hand every intact record of a segment to {@code consumer}. A torn or corrupt tail
+	 * of the last segment is what a crash leaves behind and is truncated away; anywhere
+	 * else it means lost records and fails recovery.
+	 */
+	static void replay(Path segment, boolean last, Consumer<ByteBuffer> consumer) {
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			long size = channel.size();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			int valid = 0;
+			while (buffer.remaining() >= HEADER_SIZE) {
+				int length = buffer.getInt();
+				int checksum = buffer.getInt();
+				if (length < 0 || length > buffer.remaining()) {
+					break;
+				}
+				byte[] record = new byte[length];
+				buffer.get(record);
+				CRC32 crc = new CRC32();
+				crc.update(record);
+				if ((int) crc.getValue() != checksum) {
+					break;
+				}
+				consumer.accept(ByteBuffer.wrap(record));
+				valid = buffer.position();
+			}
+			if (valid < size) {
+				if (!last) {
+					throw new IllegalStateException(String.format(
+							"Corrupt store log segment %s at offset %d", segment, valid));
+				}
+				channel.truncate(valid);
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	static void deleteSegmentsUpTo(Path directory, long number) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				long segmentNumber = segmentNumber(file);
+				if (segmentNumber >= 0 && segmentNumber <= number) {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+	}
+
+	private static class Entry {
+		private final byte[] record;
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+		private volatile long closedSegment;
+
+		Entry(byte[] record) {
+			this.record = record;
+		}
+	}
+}
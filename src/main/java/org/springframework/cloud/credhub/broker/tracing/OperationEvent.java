@@ -0,0 +1,44 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.springframework.cloud.credhub.broker.Operation")
+@Label("Broker Operation")
+@Category("Credential Broker")
+@Description("An OSB operation served by the broker")
+class OperationEvent extends Event {
+	@Label("Operation")
+	String operation;
+
+	@Label("Service Instance Id")
+	String instanceId;
+
+	@Label("Binding Id")
+	String bindingId;
+
+	@Label("Success")
+	boolean success;
+
+	@Label("SQL Statements")
+	int statements;
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-thread collector of the steps taken by the operation currently running on the
+ * thread. Buffers are reused across operations so recording a step does not allocate.
+ */
+final class RequestTrace {
+	private static final int MAX_STEPS = 64;
+
+	private static final ThreadLocal<RequestTrace> CURRENT = ThreadLocal
+			.withInitial(RequestTrace::new);
+
+	private final String[] names = new String[MAX_STEPS];
+	private final long[] durations = new long[MAX_STEPS];
+	private int size;
+	private int statements;
+	private boolean active;
+
+	private RequestTrace() {
+	}
+
+	static RequestTrace begin() {
+		RequestTrace trace = CURRENT.get();
+		trace.size = 0;
+		trace.statements = 0;
+		trace.active = true;
+		return trace;
+	}
+
+	static boolean isActive() {
+		return CURRENT.get().active;
+	}
+
+	static void record(String name, long durationNanos) {
+		RequestTrace trace = CURRENT.get();
+		if (trace.active && trace.size < MAX_STEPS) {
+			trace.names[trace.size] = name;
+			trace.durations[trace.size] = durationNanos;
+			trace.size++;
+		}
+	}
+
+	static void countStatement() {
+		RequestTrace trace = CURRENT.get();
+		if (trace.active) {
+			trace.statements++;
+		}
+	}
+
+	int statements() {
+		return statements;
+	}
+
+	void end() {
+		active = false;
+	}
+
+	List<SlowRequest.Step> steps() {
+		List<SlowRequest.Step> steps = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			steps.add(new SlowRequest.Step(names[i], durations[i]));
+		}
+		return steps;
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.tracing;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+
+@Getter
+public class SlowRequest {
+	private final String operation;
+	private final String instanceId;
+	private final String bindingId;
+	private final Instant completedAt;
+	private final double durationMillis;
+	private final boolean success;
+	private final int statements;
+	private final List<Step> steps;
+
+	SlowRequest(String operation, String instanceId, String bindingId,
+			long durationNanos, boolean success, int statements, List<Step> steps) {
+		this.operation = operation;
+		this.instanceId = instanceId;
+		this.bindingId = bindingId;
+		this.completedAt = Instant.now();
+		this.durationMillis = toMillis(durationNanos);
+		this.success = success;
+		this.statements = statements;
+		this.steps = steps;
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	@Getter
+	public static class Step {
+		private final String name;
+		private final double durationMillis;
+
+		Step(String name, long durationNanos) {
+			this.name = name;
+			this.durationMillis = toMillis(durationNanos);
+		}
+	}
+}
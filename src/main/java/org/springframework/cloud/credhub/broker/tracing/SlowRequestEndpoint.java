@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.tracing;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+@Endpoint(id = "slowrequests")
+public class SlowRequestEndpoint {
+	private final SlowRequestRecorder recorder;
+
+	public SlowRequestEndpoint(SlowRequestRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	@ReadOperation
+	public List<SlowRequest> slowRequests() {
+		return recorder.slowest();
+	}
+
+	@DeleteOperation
+	public void clear() {
+		recorder.clear();
+	}
+}
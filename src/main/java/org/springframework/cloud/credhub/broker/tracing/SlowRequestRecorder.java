@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.tracing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded ring buffer of the most recent operations that took longer than the
+ * configured threshold. Faster operations are never copied out of their thread.
+ */
+public class SlowRequestRecorder {
+	private final long thresholdNanos;
+	private final AtomicReferenceArray<SlowRequest> slots;
+	private final AtomicLong cursor = new AtomicLong();
+
+	public SlowRequestRecorder(long thresholdNanos, int capacity) {
+		this.thresholdNanos = thresholdNanos;
+		this.slots = new AtomicReferenceArray<>(Math.max(1, capacity));
+	}
+
+	boolean isSlow(long durationNanos) {
+		return durationNanos >= thresholdNanos;
+	}
+
+	void record(SlowRequest request) {
+		int slot = (int) (cursor.getAndIncrement() % slots.length());
+		slots.set(slot, request);
+	}
+
+	public List<SlowRequest> slowest() {
+		List<SlowRequest> requests = new ArrayList<>(slots.length());
+		for (int i = 0; i < slots.length(); i++) {
+			SlowRequest request = slots.get(i);
+			if (request != null) {
+				requests.add(request);
+			}
+		}
+		requests.sort(Comparator.comparingDouble(SlowRequest::getDurationMillis).reversed());
+		return requests;
+	}
+
+	public void clear() {
+		for (int i = 0; i < slots.length(); i++) {
+			slots.set(i, null);
+		}
+	}
+}
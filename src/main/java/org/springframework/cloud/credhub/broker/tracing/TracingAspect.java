@@ -0,0 +1,207 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.tracing;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.binding.DeleteServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.binding.GetServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.instance.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.instance.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.instance.GetServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.instance.UpdateServiceInstanceRequest;
+import org.springframework.data.repository.Repository;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Emits JFR events around every OSB operation and every password hash, repository and
+ * CredHub call, and hands operations slower than the threshold to the
+ * {@link SlowRequestRecorder} together with their step breakdown. SQL statements are
+ * counted per operation, see {@link StatementCountingInspector}, and checked against
+ * the configured budgets.
+ */
+@Aspect
+public class TracingAspect {
+	private static final Log log = LogFactory.getLog(TracingAspect.class);
+
+	private final SlowRequestRecorder recorder;
+	private final Map<String, Integer> statementBudgets;
+	private final ConcurrentMap<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+	public TracingAspect(SlowRequestRecorder recorder,
+			Map<String, Integer> statementBudgets) {
+		this.recorder = recorder;
+		this.statementBudgets = statementBudgets;
+	}
+
+	@Around("execution(public * org.springframework.cloud.servicebroker.service.ServiceInstanceService.*(..))"
+			+ " || execution(public * org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService.*(..))")
+	public Object traceOperation(ProceedingJoinPoint joinPoint) throws Throwable {
+		Object request = joinPoint.getArgs().length > 0 ? joinPoint.getArgs()[0] : null;
+
+		OperationEvent event = new OperationEvent();
+		RequestTrace trace = RequestTrace.begin();
+		long start = System.nanoTime();
+		event.begin();
+		boolean success = false;
+		try {
+			Object result = joinPoint.proceed();
+			success = true;
+			return result;
+		}
+		finally {
+			event.end();
+			long elapsed = System.nanoTime() - start;
+			trace.end();
+
+			String operation = joinPoint.getSignature().getName();
+			int statements = trace.statements();
+			Integer budget = statementBudgets.get(operation);
+			if (budget != null && statements > budget) {
+				log.warn(operation + " ran " + statements
+						+ " SQL statements, over its budget of " + budget);
+			}
+
+			boolean slow = recorder.isSlow(elapsed);
+			if (slow || event.shouldCommit()) {
+				String instanceId = instanceId(request);
+				String bindingId = bindingId(request);
+				if (event.shouldCommit()) {
+					event.operation = operation;
+					event.instanceId = instanceId;
+					event.bindingId = bindingId;
+					event.success = success;
+					event.statements = statements;
+					event.commit();
+				}
+				if (slow) {
+					recorder.record(new SlowRequest(operation, instanceId, bindingId,
+							elapsed, success, statements, trace.steps()));
+				}
+			}
+		}
+	}
+
+	@Around("execution(* org.springframework.security.crypto.password.PasswordEncoder+.*(..))")
+	public Object traceHash(ProceedingJoinPoint joinPoint) throws Throwable {
+		return traceStep(joinPoint, "hash", "PasswordEncoder");
+	}
+
+	@Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+	public Object traceRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+		Class<?> targetClass = AopUtils.getTargetClass(joinPoint.getTarget());
+		String owner = repositoryNames.computeIfAbsent(targetClass,
+				type -> repositoryName(type, joinPoint.getSignature().getDeclaringType()));
+		return traceStep(joinPoint, "repository", owner);
+	}
+
+	/**
+	 * The broker's own repository interface a Spring Data proxy or an embedded
+	 * repository implements, rather than whichever interface the proxy lists first.
+	 */
+	static String repositoryName(Class<?> targetClass, Class<?> declaringType) {
+		for (Class<?> type : ClassUtils.getAllInterfacesForClassAsSet(targetClass)) {
+			if (Repository.class.isAssignableFrom(type)
+					&& !type.getName().startsWith("org.springframework.data.")) {
+				return type.getSimpleName();
+			}
+		}
+		return declaringType.getSimpleName();
+	}
+
+	@Around("execution(* org.springframework.credhub.core.CredHubOperations+.*(..))")
+	public Object traceCredHub(ProceedingJoinPoint joinPoint) throws Throwable {
+		return traceStep(joinPoint, "credhub", "CredHubOperations");
+	}
+
+	private Object traceStep(ProceedingJoinPoint joinPoint, String kind, String owner)
+			throws Throwable {
+		StepEvent event = new StepEvent();
+		long start = System.nanoTime();
+		event.begin();
+		try {
+			return joinPoint.proceed();
+		}
+		finally {
+			event.end();
+			long elapsed = System.nanoTime() - start;
+			boolean traced = RequestTrace.isActive();
+			if (traced || event.shouldCommit()) {
+				String step = owner + "." + joinPoint.getSignature().getName();
+				if (event.shouldCommit()) {
+					event.kind = kind;
+					event.step = step;
+					event.commit();
+				}
+				if (traced) {
+					RequestTrace.record(step, elapsed);
+				}
+			}
+		}
+	}
+
+	private static String instanceId(Object request) {
+		if (request instanceof CreateServiceInstanceRequest) {
+			return ((CreateServiceInstanceRequest) request).getServiceInstanceId();
+		}
+		if (request instanceof GetServiceInstanceRequest) {
+			return ((GetServiceInstanceRequest) request).getServiceInstanceId();
+		}
+		if (request instanceof UpdateServiceInstanceRequest) {
+			return ((UpdateServiceInstanceRequest) request).getServiceInstanceId();
+		}
+		if (request instanceof DeleteServiceInstanceRequest) {
+			return ((DeleteServiceInstanceRequest) request).getServiceInstanceId();
+		}
+		if (request instanceof GetLastServiceOperationRequest) {
+			return ((GetLastServiceOperationRequest) request).getServiceInstanceId();
+		}
+		if (request instanceof CreateServiceInstanceBindingRequest) {
+			return ((CreateServiceInstanceBindingRequest) request).getServiceInstanceId();
+		}
+		if (request instanceof GetServiceInstanceBindingRequest) {
+			return ((GetServiceInstanceBindingRequest) request).getServiceInstanceId();
+		}
+		if (request instanceof DeleteServiceInstanceBindingRequest) {
+			return ((DeleteServiceInstanceBindingRequest) request).getServiceInstanceId();
+		}
+		return null;
+	}
+
+	private static String bindingId(Object request) {
+		if (request instanceof CreateServiceInstanceBindingRequest) {
+			return ((CreateServiceInstanceBindingRequest) request).getBindingId();
+		}
+		if (request instanceof GetServiceInstanceBindingRequest) {
+			return ((GetServiceInstanceBindingRequest) request).getBindingId();
+		}
+		if (request instanceof DeleteServiceInstanceBindingRequest) {
+			return ((DeleteServiceInstanceBindingRequest) request).getBindingId();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.tracing;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("broker.tracing")
+@Getter
+@Setter
+public class TracingProperties {
+	private boolean enabled = true;
+
+	/**
+	 * Operations taking at least this long are kept in the slow request buffer.
+	 */
+	private Duration slowThreshold = Duration.ofMillis(500);
+
+	/**
+	 * Number of slow requests kept in the buffer.
+	 */
+	private int capacity = 32;
+
+	/**
+	 * Maximum number of SQL statements per OSB operation, keyed by service method name.
+	 * Operations going over their budget are logged.
+	 */
+	private Map<String, Integer> statementBudgets = new HashMap<>();
+}
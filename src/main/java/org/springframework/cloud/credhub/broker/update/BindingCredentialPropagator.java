@@ -0,0 +1,187 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.update;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.credhub.broker.repository.BindingPlacement;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.service.CredhubServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Rewrites the binding credentials of updated service instances on a bounded worker
+ * pool shared by all updates, so a large update neither floods CredHub nor holds up the
+ * CredHub executor that binds use. One update per service instance runs at a time.
+ */
+public class BindingCredentialPropagator {
+	private static final Log log = LogFactory.getLog(BindingCredentialPropagator.class);
+
+	private static final int PAGE_SIZE = 500;
+
+	private final ServiceBindingRepository bindingRepository;
+	private final CredhubServiceInstanceBindingService bindingService;
+	private final Executor executor;
+	private final InstanceUpdateProperties properties;
+
+	private final ConcurrentMap<String, InstanceUpdate> updates = new ConcurrentHashMap<>();
+
+	public BindingCredentialPropagator(ServiceBindingRepository bindingRepository,
+			CredhubServiceInstanceBindingService bindingService, Executor executor,
+			InstanceUpdateProperties properties) {
+		this.bindingRepository = bindingRepository;
+		this.bindingService = bindingService;
+		this.executor = executor;
+		this.properties = properties;
+	}
+
+	/**
+	 * Start rewriting the credentials of every binding of a service instance for a plan.
+	 * If any rewrite fails, the credentials already rewritten are restored to the kind
+	 * the previous plan hands out.
+	 * @param apply persists the update once all credentials have been rewritten
+	 */
+	public InstanceUpdate start(String instanceId, String previousPlanId, String planId,
+			Runnable apply) {
+		List<BindingPlacement> placements = placements(instanceId);
+		InstanceUpdate update = new InstanceUpdate(instanceId, previousPlanId, planId,
+				placements.size());
+		updates.compute(instanceId, (id, current) -> {
+			if (current != null && current.isInProgress()) {
+				throw new ServiceBrokerException(
+						"An update of service instance " + instanceId + " is in progress");
+			}
+			return update;
+		});
+		log.info(String.format("Rewriting %d binding credentials of service instance %s",
+				placements.size(), instanceId));
+
+		Queue<BindingPlacement> rewritten = new ConcurrentLinkedQueue<>();
+		List<CompletableFuture<Void>> rewrites = placements.stream()
+				.map(placement -> CompletableFuture
+						.runAsync(() -> bindingService.rewriteCredential(placement, planId),
+								executor)
+						.handle((result, e) -> {
+							if (e == null) {
+								rewritten.add(placement);
+								update.rewritten();
+							}
+							else {
+								Throwable cause = e.getCause() != null ? e.getCause() : e;
+								log.warn("Failed to rewrite the credential of binding "
+										+ placement.getBindingId(), cause);
+								update.failed(placement.getBindingId(), cause.getMessage());
+							}
+							return (Void) null;
+						}))
+				.collect(Collectors.toList());
+		CompletableFuture.allOf(rewrites.toArray(new CompletableFuture[0]))
+				.thenCompose(done -> update.hasFailures()
+						? restore(update, rewritten)
+						: CompletableFuture.completedFuture(null))
+				.thenRun(() -> update.finish(apply));
+		return update;
+	}
+
+	private CompletableFuture<Void> restore(InstanceUpdate update,
+			Collection<BindingPlacement> rewritten) {
+		log.info(String.format("Restoring %d rewritten binding credentials of service "
+				+ "instance %s", rewritten.size(), update.getInstanceId()));
+		return CompletableFuture.allOf(rewritten.stream()
+				.map(placement -> CompletableFuture
+						.runAsync(() -> bindingService.rewriteCredential(placement,
+								update.getPreviousPlanId()), executor)
+						.handle((result, e) -> {
+							if (e != null) {
+								Throwable cause = e.getCause() != null ? e.getCause() : e;
+								log.error("Failed to restore the credential of binding "
+										+ placement.getBindingId(), cause);
+								update.restoreFailed(placement.getBindingId(),
+										cause.getMessage());
+							}
+							return (Void) null;
+						}))
+				.toArray(CompletableFuture[]::new));
+	}
+
+	/**
+	 * Whether an update rewrites enough credentials to be worth running asynchronously.
+	 */
+	public boolean isLarge(InstanceUpdate update) {
+		return update.getTotal() > properties.getAsyncThreshold();
+	}
+
+	/**
+	 * The update of a service instance, or {@code null} if this node does not track an
+	 * update with that operation id.
+	 */
+	public InstanceUpdate find(String instanceId, String operation) {
+		InstanceUpdate update = updates.get(instanceId);
+		if (update == null
+				|| (operation != null && !operation.equals(update.getOperation()))) {
+			return null;
+		}
+		return update;
+	}
+
+	/**
+	 * Whether an update this node does not track may still be running elsewhere.
+	 */
+	public boolean mayBeRunning(String operation) {
+		Instant started = InstanceUpdate.startOf(operation);
+		return started != null
+				&& started.plus(properties.getTimeout()).isAfter(Instant.now());
+	}
+
+	public Collection<InstanceUpdate> updates() {
+		return updates.values();
+	}
+
+	@Scheduled(fixedDelay = 60000)
+	public void prune() {
+		Instant expired = Instant.now().minus(properties.getRetention());
+		updates.values().removeIf(update -> update.finishedBefore(expired));
+	}
+
+	private List<BindingPlacement> placements(String instanceId) {
+		List<BindingPlacement> placements = new ArrayList<>();
+		Page<BindingPlacement> page;
+		int pageNumber = 0;
+		do {
+			page = bindingRepository.findPlacementsByInstanceId(instanceId,
+					PageRequest.of(pageNumber++, PAGE_SIZE));
+			placements.addAll(page.getContent());
+		}
+		while (page.hasNext());
+		return placements;
+	}
+}
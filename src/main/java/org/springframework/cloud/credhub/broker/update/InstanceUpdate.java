@@ -0,0 +1,208 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.cloud.servicebroker.model.instance.OperationState;
+
+/**
+ * Progress of a service instance update that rewrites the credentials of its bindings.
+ * The operation id is the time the update began followed by the target plan id, so any
+ * broker node can tell how long an update it does not track has been running and which
+ * plan it moves the instance to.
+ */
+public class InstanceUpdate {
+	private static final int MAX_REPORTED_FAILURES = 20;
+
+	private final String operation;
+	private final String instanceId;
+	private final String previousPlanId;
+	private final String planId;
+	private final int total;
+	private final Instant started = Instant.now();
+	private final AtomicInteger rewritten = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicInteger unrestored = new AtomicInteger();
+	private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+	private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+	private volatile OperationState state = OperationState.IN_PROGRESS;
+	private volatile String description;
+	private volatile Instant finished;
+
+	InstanceUpdate(String instanceId, String previousPlanId, String planId, int total) {
+		this.operation = started.toEpochMilli() + "-" + planId;
+		this.instanceId = instanceId;
+		this.previousPlanId = previousPlanId;
+		this.planId = planId;
+		this.total = total;
+	}
+
+	/**
+	 * When the update with the given operation id started, if the id is one of ours.
+	 */
+	static Instant startOf(String operation) {
+		if (operation == null || operation.indexOf('-') < 0) {
+			return null;
+		}
+		try {
+			return Instant.ofEpochMilli(
+					Long.parseLong(operation.substring(0, operation.indexOf('-'))));
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * The plan the update with the given operation id moves its instance to, if the id is
+	 * one of ours.
+	 */
+	public static String planOf(String operation) {
+		if (startOf(operation) == null) {
+			return null;
+		}
+		return operation.substring(operation.indexOf('-') + 1);
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public String getInstanceId() {
+		return instanceId;
+	}
+
+	public String getPreviousPlanId() {
+		return previousPlanId;
+	}
+
+	public String getPlanId() {
+		return planId;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public OperationState getState() {
+		return state;
+	}
+
+	public String getDescription() {
+		if (description != null) {
+			return description;
+		}
+		return String.format("Rewrote %d of %d binding credentials", rewritten.get(), total);
+	}
+
+	public boolean isInProgress() {
+		return state == OperationState.IN_PROGRESS;
+	}
+
+	boolean finishedBefore(Instant instant) {
+		return finished != null && finished.isBefore(instant);
+	}
+
+	/**
+	 * Wait for the update to finish.
+	 */
+	public void await() {
+		completion.join();
+	}
+
+	void rewritten() {
+		rewritten.incrementAndGet();
+	}
+
+	void failed(String bindingId, String reason) {
+		if (failed.incrementAndGet() <= MAX_REPORTED_FAILURES) {
+			failures.add(bindingId + ": " + reason);
+		}
+	}
+
+	boolean hasFailures() {
+		return failed.get() > 0;
+	}
+
+	void restoreFailed(String bindingId, String reason) {
+		if (unrestored.incrementAndGet() + failed.get() <= MAX_REPORTED_FAILURES) {
+			failures.add(bindingId + ": not restored: " + reason);
+		}
+	}
+
+	/**
+	 * Apply the update once every binding credential has been rewritten. If any could not
+	 * be, the credentials already rewritten have been restored to the previous plan's
+	 * kind and the instance is left unchanged, so the platform can retry the whole update.
+	 */
+	void finish(Runnable apply) {
+		try {
+			if (failed.get() > 0) {
+				fail(unrestored.get() == 0
+						? String.format("Failed to rewrite %d of %d binding credentials, the "
+								+ "plan was not changed", failed.get(), total)
+						: String.format("Failed to rewrite %d of %d binding credentials, the "
+								+ "plan was not changed but %d rewritten credentials could "
+								+ "not be restored, retry the update", failed.get(), total,
+								unrestored.get()));
+				return;
+			}
+			apply.run();
+			description = String.format("Rewrote %d binding credentials", total);
+			state = OperationState.SUCCEEDED;
+		}
+		catch (RuntimeException e) {
+			fail("Failed to apply the update: " + e.getMessage());
+		}
+		finally {
+			finished = Instant.now();
+			completion.complete(null);
+		}
+	}
+
+	private void fail(String reason) {
+		description = reason;
+		state = OperationState.FAILED;
+	}
+
+	public Map<String, Object> progress() {
+		Map<String, Object> progress = new LinkedHashMap<>();
+		progress.put("operation", operation);
+		progress.put("instanceId", instanceId);
+		progress.put("previousPlanId", previousPlanId);
+		progress.put("planId", planId);
+		progress.put("state", state);
+		progress.put("total", total);
+		progress.put("rewritten", rewritten.get());
+		progress.put("failed", failed.get());
+		progress.put("unrestored", unrestored.get());
+		progress.put("failures", failures.toArray());
+		progress.put("started", started.toString());
+		progress.put("elapsedMs", Duration
+				.between(started, finished != null ? finished : Instant.now()).toMillis());
+		return progress;
+	}
+}
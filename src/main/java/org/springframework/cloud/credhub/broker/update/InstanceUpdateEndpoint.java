@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.update;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+@Endpoint(id = "instanceupdates")
+public class InstanceUpdateEndpoint {
+	private final BindingCredentialPropagator propagator;
+
+	public InstanceUpdateEndpoint(BindingCredentialPropagator propagator) {
+		this.propagator = propagator;
+	}
+
+	@ReadOperation
+	public List<Map<String, Object>> instanceUpdates() {
+		return propagator.updates().stream().map(InstanceUpdate::progress)
+				.collect(Collectors.toList());
+	}
+
+	@ReadOperation
+	public Map<String, Object> instanceUpdate(@Selector String instanceId) {
+		InstanceUpdate update = propagator.find(instanceId, null);
+		return update != null ? update.progress() : null;
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.update;
+
+import java.time.Duration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("broker.updates")
+@Getter
+@Setter
+public class InstanceUpdateProperties {
+	/**
+	 * Binding credentials rewritten in parallel, across all running updates.
+	 */
+	private int concurrency = 8;
+
+	/**
+	 * Updates rewriting more binding credentials than this run asynchronously when the
+	 * platform accepts it.
+	 */
+	private int asyncThreshold = 100;
+
+	/**
+	 * How long finished updates are kept for last operation polls and the
+	 * {@code instanceupdates} endpoint.
+	 */
+	private Duration retention = Duration.ofHours(1);
+
+	/**
+	 * How long an update this node does not know about, because it runs on another node
+	 * or was interrupted by a restart, is reported as in progress.
+	 */
+	private Duration timeout = Duration.ofMinutes(30);
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.credhub.broker.certificate.CertificateIssuer;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShards;
+import org.springframework.cloud.credhub.broker.credhub.CredentialNames;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.repository.ServiceInstanceRepository;
+import org.springframework.cloud.credhub.broker.repository.UserRepository;
+import org.springframework.cloud.credhub.broker.service.UserService;
+import org.springframework.cloud.servicebroker.model.catalog.Catalog;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * Exercises the cold paths of a bind once the application is up: JPA queries and
+ * connections, password generation and bcrypt, the CredHub connection and token of
+ * every shard, catalog serialization and certificate issuing. Failures are logged and do not keep the
+ * broker from becoming ready; they only mean that path stays cold.
+ */
+public class BrokerWarmup implements ApplicationListener<ApplicationReadyEvent> {
+	private static final Log log = LogFactory.getLog(BrokerWarmup.class);
+
+	private static final String PROBE_ID = "warmup-probe";
+
+	private final WarmupProperties properties;
+	private final ServiceInstanceRepository instanceRepository;
+	private final ServiceBindingRepository bindingRepository;
+	private final UserRepository userRepository;
+	private final UserService userService;
+	private final CredHubShards credHubShards;
+	private final Executor credHubExecutor;
+	private final Catalog catalog;
+	private final ObjectMapper objectMapper;
+	private final CertificateIssuer certificateIssuer;
+	private final boolean certificatesEnabled;
+
+	private final Map<String, Map<String, Object>> steps = new LinkedHashMap<>();
+	private volatile long startedAt;
+	private volatile boolean finished;
+
+	public BrokerWarmup(WarmupProperties properties,
+			ServiceInstanceRepository instanceRepository,
+			ServiceBindingRepository bindingRepository, UserRepository userRepository,
+			UserService userService, CredHubShards credHubShards, Executor credHubExecutor,
+			Catalog catalog, ObjectMapper objectMapper, CertificateIssuer certificateIssuer,
+			boolean certificatesEnabled) {
+		this.properties = properties;
+		this.instanceRepository = instanceRepository;
+		this.bindingRepository = bindingRepository;
+		this.userRepository = userRepository;
+		this.userService = userService;
+		this.credHubShards = credHubShards;
+		this.credHubExecutor = credHubExecutor;
+		this.catalog = catalog;
+		this.objectMapper = objectMapper;
+		this.certificateIssuer = certificateIssuer;
+		this.certificatesEnabled = certificatesEnabled;
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationReadyEvent event) {
+		startedAt = System.nanoTime();
+		Thread thread = new Thread(this::run, "broker-warmup");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	void run() {
+		step("database", this::warmUpDatabase);
+		step("password", this::warmUpPasswords);
+		step("credhub", this::warmUpCredHub);
+		step("catalog", this::warmUpCatalog);
+		if (certificatesEnabled) {
+			step("certificate", this::warmUpCertificates);
+		}
+		finished = true;
+		log.info("Broker warm-up finished in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) + " ms");
+	}
+
+	public boolean isReady() {
+		return finished || (startedAt != 0
+				&& System.nanoTime() - startedAt >= properties.getTimeout().toNanos());
+	}
+
+	public Map<String, Object> details() {
+		Map<String, Object> details = new LinkedHashMap<>();
+		details.put("finished", finished);
+		synchronized (steps) {
+			details.put("steps", new LinkedHashMap<>(steps));
+		}
+		return details;
+	}
+
+	private void warmUpDatabase() {
+		for (int i = 0; i < properties.getIterations(); i++) {
+			instanceRepository.findById(PROBE_ID);
+			instanceRepository.existsById(PROBE_ID);
+			bindingRepository.findById(PROBE_ID);
+			bindingRepository.findBindingIdsByInstanceId(PROBE_ID);
+			userRepository.findByUsername(PROBE_ID);
+		}
+	}
+
+	private void warmUpPasswords() {
+		for (int i = 0; i < properties.getIterations(); i++) {
+			userService.warmUp();
+		}
+	}
+
+	private void warmUpCredHub() {
+		List<CompletableFuture<?>> probes = new ArrayList<>();
+		for (String shard : credHubShards.names()) {
+			probes.add(CompletableFuture.runAsync(() -> credHubShards.operations(shard)
+					.findByPath(CredentialNames.instancePath(PROBE_ID)), credHubExecutor));
+		}
+		CompletableFuture.allOf(probes.toArray(new CompletableFuture[0])).join();
+	}
+
+	private void warmUpCertificates() {
+		for (int i = 0; i < properties.getIterations(); i++) {
+			certificateIssuer.warmUp();
+		}
+	}
+
+	private void warmUpCatalog() {
+		try {
+			for (int i = 0; i < properties.getIterations(); i++) {
+				objectMapper.writeValueAsBytes(catalog);
+			}
+		}
+		catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void step(String name, Runnable step) {
+		long start = System.nanoTime();
+		Map<String, Object> result = new LinkedHashMap<>();
+		try {
+			step.run();
+			result.put("status", "done");
+		}
+		catch (RuntimeException e) {
+			log.warn("Warm-up step " + name + " failed", e);
+			result.put("status", "failed");
+			result.put("error", e.getMessage());
+		}
+		result.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		synchronized (steps) {
+			steps.put(name, result);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.warmup;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+/**
+ * Keeps the broker out of service until warm-up has finished, so a router health
+ * checking {@code /actuator/health} does not send traffic to a cold instance.
+ */
+public class WarmupHealthIndicator implements HealthIndicator {
+	private final BrokerWarmup warmup;
+
+	public WarmupHealthIndicator(BrokerWarmup warmup) {
+		this.warmup = warmup;
+	}
+
+	@Override
+	public Health health() {
+		Health.Builder builder = warmup.isReady() ? Health.up() : Health.outOfService();
+		warmup.details().forEach(builder::withDetail);
+		return builder.build();
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.warmup;
+
+import java.time.Duration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("broker.warmup")
+@Getter
+@Setter
+public class WarmupProperties {
+	private boolean enabled = true;
+
+	/**
+	 * Number of times the local code paths are exercised.
+	 */
+	private int iterations = 3;
+
+	/**
+	 * The broker reports ready after this long even if warm-up has not finished.
+	 */
+	private Duration timeout = Duration.ofMinutes(2);
+
+	/**
+	 * Reject OSB requests with 503 until warm-up has finished.
+	 */
+	private boolean gateRequests = true;
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AuditTrailTests {
+	private final List<AuditEvent> written = new CopyOnWriteArrayList<>();
+	private final AuditProperties properties = new AuditProperties();
+	private final AuditTrail auditTrail = new AuditTrail(properties, written::addAll);
+
+	@Test
+	public void stopWithoutStartDoesNothing() {
+		auditTrail.stop();
+
+		assertThat(auditTrail.isRunning()).isFalse();
+	}
+
+	@Test
+	public void stopFlushesBufferedEvents() {
+		auditTrail.start();
+
+		auditTrail.record(AuditAction.CREATE, AuditResource.SERVICE_INSTANCE, "instance",
+				"instance", null);
+		auditTrail.stop();
+
+		assertThat(written).extracting(AuditEvent::getResourceId)
+				.containsExactly("instance");
+	}
+
+	@Test
+	public void writesEventsRecordedAfterStopDirectly() {
+		auditTrail.start();
+		auditTrail.stop();
+
+		auditTrail.record(AuditAction.DELETE, AuditResource.SERVICE_BINDING, "binding",
+				"instance", AuditTrail.adminIdentity("admin"));
+
+		assertThat(written).hasSize(1);
+		assertThat(written.get(0).getOriginatingIdentity()).isEqualTo("admin/admin");
+		assertThat(auditTrail.statistics().get("flushed")).isEqualTo(1L);
+	}
+
+	@Test
+	public void eventsRecordedWhileStoppingAreWrittenOnceAndNeverConcurrently() throws Exception {
+		AtomicInteger writing = new AtomicInteger();
+		AtomicBoolean overlapped = new AtomicBoolean();
+		properties.setFlushSize(4);
+		properties.setFlushInterval(Duration.ofMillis(5));
+		AuditTrail slowTrail = new AuditTrail(properties, events -> {
+			if (writing.incrementAndGet() > 1) {
+				overlapped.set(true);
+			}
+			Thread.sleep(2);
+			written.addAll(events);
+			writing.decrementAndGet();
+		});
+		slowTrail.start();
+		for (int i = 0; i < 40; i++) {
+			slowTrail.record(AuditAction.CREATE, AuditResource.SERVICE_BINDING, "before-" + i,
+					"instance", null);
+		}
+
+		Thread stopper = new Thread(slowTrail::stop);
+		stopper.start();
+		int during = 0;
+		while (stopper.isAlive()) {
+			slowTrail.record(AuditAction.CREATE, AuditResource.SERVICE_BINDING,
+					"during-" + during++, "instance", null);
+		}
+		stopper.join();
+		slowTrail.record(AuditAction.CREATE, AuditResource.SERVICE_BINDING, "after",
+				"instance", null);
+
+		assertThat(overlapped).isFalse();
+		assertThat(written).extracting(AuditEvent::getResourceId)
+				.doesNotHaveDuplicates().hasSize(40 + during + 1);
+	}
+
+	@Test
+	public void stopsAfterOtherLifecycleBeans() {
+		assertThat(auditTrail.getPhase()).isEqualTo(Integer.MIN_VALUE);
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+public class ApplicationConfigurationTests {
+	@Test
+	public void aBlockedJobDoesNotHoldBackTheOthers() {
+		new ApplicationContextRunner()
+				.withUserConfiguration(ApplicationConfiguration.class, JobsConfiguration.class)
+				.run(context -> {
+					Jobs jobs = context.getBean(Jobs.class);
+					try {
+						assertThat(jobs.blockedStarted.await(5, TimeUnit.SECONDS)).isTrue();
+						assertThat(jobs.probes.await(5, TimeUnit.SECONDS)).isTrue();
+					}
+					finally {
+						jobs.release.countDown();
+					}
+				});
+	}
+
+	@Configuration
+	static class JobsConfiguration {
+		@Bean
+		public Jobs jobs() {
+			return new Jobs();
+		}
+	}
+
+	static class Jobs {
+		private final CountDownLatch blockedStarted = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+		private final CountDownLatch probes = new CountDownLatch(3);
+
+		@Scheduled(fixedDelay = 10)
+		public void blocked() throws InterruptedException {
+			blockedStarted.countDown();
+			release.await();
+		}
+
+		@Scheduled(fixedDelay = 10)
+		public void probe() {
+			probes.countDown();
+		}
+	}
+}
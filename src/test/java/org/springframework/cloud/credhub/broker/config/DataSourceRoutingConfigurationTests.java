@@ -0,0 +1,68 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.Test;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+public class DataSourceRoutingConfigurationTests {
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withUserConfiguration(DataSourcePropertiesConfiguration.class,
+					DataSourceRoutingConfiguration.class)
+			.withPropertyValues("spring.datasource.url=jdbc:hsqldb:mem:primary",
+					"broker.datasource.replicas[0].url=jdbc:hsqldb:mem:replica");
+
+	@Test
+	public void bindsHikariPropertiesToThePrimaryPool() {
+		contextRunner
+				.withPropertyValues("spring.datasource.name=broker-db",
+						"spring.datasource.hikari.maximum-pool-size=3",
+						"spring.datasource.hikari.connection-timeout=1500")
+				.run(context -> {
+					HikariDataSource primary = context.getBean(HikariDataSource.class);
+					assertThat(primary.getJdbcUrl()).isEqualTo("jdbc:hsqldb:mem:primary");
+					assertThat(primary.getPoolName()).isEqualTo("broker-db");
+					assertThat(primary.getMaximumPoolSize()).isEqualTo(3);
+					assertThat(primary.getConnectionTimeout()).isEqualTo(1500);
+					assertThat(context.getBean(DataSource.class))
+							.isInstanceOf(LazyConnectionDataSourceProxy.class);
+				});
+	}
+
+	@Test
+	public void backsOffWithoutReplicas() {
+		new ApplicationContextRunner()
+				.withUserConfiguration(DataSourcePropertiesConfiguration.class,
+						DataSourceRoutingConfiguration.class)
+				.run(context -> assertThat(context).doesNotHaveBean(DataSource.class));
+	}
+
+	@Configuration
+	@EnableConfigurationProperties(DataSourceProperties.class)
+	static class DataSourcePropertiesConfiguration {
+	}
+}
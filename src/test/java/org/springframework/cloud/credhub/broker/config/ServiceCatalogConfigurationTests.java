@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import org.springframework.cloud.credhub.broker.service.ServicePlans;
+import org.springframework.cloud.servicebroker.model.catalog.Catalog;
+import org.springframework.cloud.servicebroker.model.catalog.Plan;
+import org.springframework.cloud.servicebroker.model.catalog.ServiceDefinition;
+
+public class ServiceCatalogConfigurationTests {
+	private final ServiceCatalogConfiguration configuration = new ServiceCatalogConfiguration();
+
+	@Test
+	public void idsAreStableAcrossRestarts() {
+		ServiceDefinition first = configuration.catalog(true).getServiceDefinitions().get(0);
+		ServiceDefinition second = configuration.catalog(true).getServiceDefinitions().get(0);
+
+		assertThat(second.getId()).isEqualTo(first.getId());
+		assertThat(second.getPlans()).extracting(Plan::getId)
+				.containsExactlyElementsOf(first.getPlans().stream().map(Plan::getId)
+						.collect(Collectors.toList()));
+	}
+
+	@Test
+	public void plansResolveByTheirStableIds() {
+		Catalog catalog = configuration.catalog(true);
+		ServicePlans plans = configuration.servicePlans(catalog);
+
+		String certificatePlan = ServiceCatalogConfiguration
+				.planId(ServicePlans.CERTIFICATE);
+		assertThat(plans.isCertificatePlan(certificatePlan)).isTrue();
+		assertThat(plans.idOf(ServicePlans.STANDARD))
+				.isEqualTo(ServiceCatalogConfiguration.planId(ServicePlans.STANDARD))
+				.isNotEqualTo(certificatePlan);
+	}
+
+	@Test
+	public void certificatePlanCanBeDisabled() {
+		assertThat(configuration.catalog(false).getServiceDefinitions().get(0).getPlans())
+				.extracting(Plan::getName).containsExactly(ServicePlans.STANDARD);
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.credhub;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.cloud.credhub.broker.config.CredHubConfiguration;
+import org.springframework.credhub.core.CredHubException;
+import org.springframework.credhub.core.CredHubOperations;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+public class CredHubHealthIndicatorTests {
+	private final CredHubShards credHubShards = mock(CredHubShards.class);
+	private final CredHubOperations healthy = mock(CredHubOperations.class);
+	private final CredHubOperations failing = mock(CredHubOperations.class);
+	private final CredHubHealthProperties properties = new CredHubHealthProperties();
+
+	private ThreadPoolTaskExecutor executor;
+
+	@Before
+	public void setUp() {
+		when(credHubShards.names())
+				.thenReturn(new LinkedHashSet<>(Arrays.asList("healthy", "failing")));
+		when(credHubShards.operations("healthy")).thenReturn(healthy);
+		when(credHubShards.operations("failing")).thenReturn(failing);
+		when(failing.findByPath(anyString()))
+				.thenThrow(new CredHubException(HttpStatus.SERVICE_UNAVAILABLE));
+		executor = new CredHubConfiguration().credHubHealthExecutor(credHubShards);
+		executor.initialize();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void healthExecutorHasOneThreadPerShard() {
+		assertThat(executor.getMaxPoolSize()).isEqualTo(2);
+		assertThat(executor.getThreadNamePrefix()).isEqualTo("credhub-health-");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void reportsAShardDownAfterConsecutiveFailures() {
+		properties.setDownAfter(2);
+		CredHubHealthIndicator indicator = new CredHubHealthIndicator(credHubShards,
+				executor, properties);
+		assertThat(indicator.health().getStatus()).isEqualTo(Status.UNKNOWN);
+
+		indicator.probe();
+		assertThat(indicator.health().getStatus())
+				.isEqualTo(CredHubHealthIndicator.DEGRADED);
+
+		indicator.probe();
+		Health health = indicator.health();
+		assertThat(health.getStatus()).isEqualTo(Status.DOWN);
+		Map<String, Map<String, Object>> shards = (Map<String, Map<String, Object>>) health
+				.getDetails().get("shards");
+		assertThat(shards.get("healthy").get("status")).isEqualTo("UP");
+		assertThat(shards.get("failing").get("status")).isEqualTo("DOWN");
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.credhub;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.credhub.core.CredHubTemplate;
+import org.springframework.credhub.core.OAuth2CredHubTemplate;
+
+public class CredHubShardRegistrarTests {
+	@Test
+	public void registersATemplatePerShard() {
+		new ApplicationContextRunner()
+				.withUserConfiguration(RegistrarConfiguration.class)
+				.withPropertyValues("broker.credhub.shards[0].name=mtls",
+						"broker.credhub.shards[0].url=https://credhub-a:8844",
+						"broker.credhub.shards[1].name=oauth2",
+						"broker.credhub.shards[1].url=https://credhub-b:8844",
+						"broker.credhub.shards[1].oauth2.client-id=broker",
+						"broker.credhub.shards[1].oauth2.client-secret=secret",
+						"broker.credhub.shards[1].oauth2.access-token-uri=https://uaa/oauth/token")
+				.run(context -> {
+					assertThat(context.getBean(CredHubShardRegistrar.beanName("mtls")))
+							.isExactlyInstanceOf(CredHubTemplate.class);
+					assertThat(context.getBean(CredHubShardRegistrar.beanName("oauth2")))
+							.isInstanceOf(OAuth2CredHubTemplate.class);
+				});
+	}
+
+	@Configuration
+	static class RegistrarConfiguration {
+		@Bean
+		public static CredHubShardRegistrar credHubShardRegistrar() {
+			return new CredHubShardRegistrar();
+		}
+	}
+}
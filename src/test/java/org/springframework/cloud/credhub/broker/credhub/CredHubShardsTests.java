@@ -0,0 +1,78 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.credhub;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.credhub.core.CredHubOperations;
+
+public class CredHubShardsTests {
+	private final CredHubOperations defaultOperations = mock(CredHubOperations.class);
+	private final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+
+	@Test
+	public void addingAShardOnlyMovesInstancesOntoIt() {
+		CredHubShards before = shards("a");
+		CredHubShards after = shards("a", "b");
+
+		IntStream.range(0, 1000).mapToObj(i -> "instance-" + i).forEach(instanceId -> {
+			String placed = after.shardFor(instanceId);
+			if (!placed.equals("b")) {
+				assertThat(placed).isEqualTo(before.shardFor(instanceId));
+			}
+		});
+		assertThat(IntStream.range(0, 1000).mapToObj(i -> after.shardFor("instance-" + i)))
+				.contains(CredHubShards.DEFAULT_SHARD, "a", "b");
+	}
+
+	@Test
+	public void bindingsWithoutAShardLiveOnTheDefault() {
+		CredHubShards shards = shards("a");
+
+		assertThat(shards.operations(null)).isSameAs(defaultOperations);
+		assertThat(shards.operations("a")).isSameAs(beanFactory.getBean(CredHubShardRegistrar.beanName("a")));
+		assertThatThrownBy(() -> shards.operations("missing"))
+				.isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	public void rejectsDuplicateShardNames() {
+		assertThatThrownBy(() -> shards(CredHubShards.DEFAULT_SHARD))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("Duplicate CredHub shard name");
+	}
+
+	private CredHubShards shards(String... names) {
+		CredHubShardProperties properties = new CredHubShardProperties();
+		for (String name : names) {
+			CredHubShardProperties.Shard shard = new CredHubShardProperties.Shard();
+			shard.setName(name);
+			properties.getShards().add(shard);
+			if (!beanFactory.containsBean(CredHubShardRegistrar.beanName(name))) {
+				beanFactory.addBean(CredHubShardRegistrar.beanName(name), mock(CredHubOperations.class));
+			}
+		}
+		return new CredHubShards(defaultOperations, properties, beanFactory);
+	}
+}
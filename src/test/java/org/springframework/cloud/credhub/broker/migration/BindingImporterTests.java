@@ -0,0 +1,197 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.migration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.credhub.broker.audit.AuditTrail;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShards;
+import org.springframework.cloud.credhub.broker.model.ServiceBinding;
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.model.User;
+import org.springframework.cloud.credhub.broker.quota.BindingQuotaService;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.repository.ServiceInstanceRepository;
+import org.springframework.cloud.credhub.broker.service.CredhubServiceInstanceBindingService;
+import org.springframework.cloud.credhub.broker.service.ServicePlans;
+import org.springframework.cloud.credhub.broker.service.UserService;
+import org.springframework.cloud.servicebroker.model.catalog.Catalog;
+import org.springframework.cloud.servicebroker.model.catalog.Plan;
+import org.springframework.cloud.servicebroker.model.catalog.ServiceDefinition;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class BindingImporterTests {
+	private final ServiceInstanceRepository instanceRepository = mock(
+			ServiceInstanceRepository.class);
+	private final ServiceBindingRepository bindingRepository = mock(
+			ServiceBindingRepository.class);
+	private final UserService userService = mock(UserService.class);
+	private final CredhubServiceInstanceBindingService bindingService = mock(
+			CredhubServiceInstanceBindingService.class);
+	private final CredHubShards credHubShards = mock(CredHubShards.class);
+	private final ForkJoinPool hashingPool = new ForkJoinPool(1);
+	private final List<Runnable> deferred = new ArrayList<>();
+	private boolean deferNext;
+	private final List<String> savedBindings = new ArrayList<>();
+	private final List<String> savedInstances = new ArrayList<>();
+
+	private BindingImporter importer;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		ServicePlans servicePlans = new ServicePlans(Catalog.builder()
+				.serviceDefinitions(ServiceDefinition.builder().id("service")
+						.name("credentialstore").description("store")
+						.plans(Plan.builder().id("standard-plan").name(ServicePlans.STANDARD)
+								.description("standard").build())
+						.build())
+				.build());
+		when(instanceRepository.findAllById(any())).thenReturn(Collections.singletonList(
+				new ServiceInstance("instance", "service", "standard-plan", null)));
+		when(instanceRepository.saveAll(any())).thenAnswer(invocation -> {
+			Iterable<ServiceInstance> instances = (Iterable<ServiceInstance>) invocation
+					.getArgument(0);
+			for (ServiceInstance instance : instances) {
+				if (instance.getInstanceId().startsWith("provisioned")) {
+					throw new DataIntegrityViolationException("duplicate key");
+				}
+			}
+			instances.forEach(instance -> savedInstances.add(instance.getInstanceId()));
+			return instances;
+		});
+		when(bindingRepository.findExistingBindingIds(anyCollection()))
+				.thenReturn(Collections.emptyList());
+		when(bindingRepository.saveAll(any())).thenAnswer(invocation -> {
+			List<ServiceBinding> bindings = (List<ServiceBinding>) invocation
+					.getArgument(0);
+			for (ServiceBinding binding : bindings) {
+				if (binding.getBindingId().startsWith("duplicate")) {
+					throw new DataIntegrityViolationException("duplicate key");
+				}
+			}
+			bindings.forEach(binding -> savedBindings.add(binding.getBindingId()));
+			return bindings;
+		});
+		when(userService.newPassword()).thenReturn("password");
+		when(userService.encodedUser(anyString(), anyString(), any()))
+				.thenAnswer(invocation -> new User(invocation.getArgument(0), "encoded",
+						"FULL_ACCESS"));
+		when(bindingService.writeImportedCredential(any(), any(), anyString(), any(),
+				any())).thenReturn("credhub-ref");
+		when(credHubShards.shardFor(anyString())).thenReturn("default");
+
+		BindingImportProperties properties = new BindingImportProperties();
+		properties.setBatchSize(10);
+		importer = new BindingImporter(new ObjectMapper(), instanceRepository,
+				bindingRepository, userService, bindingService, credHubShards,
+				servicePlans, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+				mock(BindingQuotaService.class), mock(AuditTrail.class),
+				this::execute, hashingPool, properties);
+	}
+
+	@After
+	public void tearDown() {
+		hashingPool.shutdown();
+	}
+
+	@Test
+	public void insertsBindingsOneByOneWhenTheBatchFails() {
+		Map<String, Object> report = importer
+				.run(ndjson(binding("first"), binding("duplicate"), binding("last")), 0)
+				.toMap();
+
+		assertThat(savedBindings).containsExactly("first", "last");
+		assertThat(report.get("bindingsImported")).isEqualTo(2L);
+		assertThat(report.get("failed")).isEqualTo(1L);
+		assertThat((Object[]) report.get("failures"))
+				.containsExactly("line 2: Failed to insert the binding: duplicate key");
+	}
+
+	@Test
+	public void insertsInstancesOneByOneWhenTheBatchFails() {
+		Map<String, Object> report = importer.run(ndjson(instance("first"),
+				instance("provisioned"), instance("last"), binding("binding")), 0).toMap();
+
+		assertThat(savedInstances).containsExactly("first", "last");
+		assertThat(report.get("instancesImported")).isEqualTo(2L);
+		assertThat(report.get("bindingsImported")).isEqualTo(1L);
+		assertThat((Object[]) report.get("failures")).containsExactly(
+				"line 2: Failed to insert the service instance: duplicate key");
+	}
+
+	@Test
+	public void startImportsInTheBackground() {
+		deferNext = true;
+		ImportReport report = importer.start(ndjson(binding("first")), 0);
+
+		assertThat(report.isRunning()).isTrue();
+		assertThat(importer.lastReport()).isSameAs(report);
+
+		deferred.remove(0).run();
+		Map<String, Object> finished = report.toMap();
+		assertThat(finished.get("running")).isEqualTo(false);
+		assertThat(finished.get("bindingsImported")).isEqualTo(1L);
+		assertThat(savedBindings).containsExactly("first");
+	}
+
+	private void execute(Runnable task) {
+		if (deferNext) {
+			deferNext = false;
+			deferred.add(task);
+		}
+		else {
+			task.run();
+		}
+	}
+
+	private static String instance(String instanceId) {
+		return "{\"type\":\"instance\",\"instanceId\":\"" + instanceId
+				+ "\",\"serviceDefinitionId\":\"service\",\"plan\":\"standard\"}";
+	}
+
+	private static String binding(String bindingId) {
+		return "{\"type\":\"binding\",\"bindingId\":\"" + bindingId
+				+ "\",\"instanceId\":\"instance\",\"appGuid\":\"app\"}";
+	}
+
+	private static InputStream ndjson(String... lines) {
+		return new ByteArrayInputStream(
+				String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ServiceInstanceTests {
+
+	@Test
+	public void withPlanLeavesTheInstanceUnchanged() {
+		Map<String, Object> parameters = new HashMap<>();
+		parameters.put("a", "1");
+		ServiceInstance instance = new ServiceInstance("instance", "service", "standard",
+				parameters);
+
+		ServiceInstance updated = instance.withPlan("certificate",
+				Collections.singletonMap("b", "2"));
+
+		assertThat(instance.getPlanId()).isEqualTo("standard");
+		assertThat(instance.getParameters()).containsOnlyKeys("a");
+		assertThat(updated.getPlanId()).isEqualTo("certificate");
+		assertThat(updated.getParameters()).containsEntry("a", "1").containsEntry("b", "2");
+	}
+
+	@Test
+	public void withPlanKeepsTheCredentialPlan() {
+		ServiceInstance instance = new ServiceInstance("instance", "service", "standard",
+				null);
+
+		ServiceInstance updated = instance.withPlan("certificate", null)
+				.withPlan("other", null);
+
+		assertThat(updated.getCredentialPlanId()).isEqualTo("standard");
+		assertThat(updated.getParameters()).isNull();
+	}
+
+	@Test
+	public void withPlanKeepsThePersistedState() {
+		ServiceInstance instance = new ServiceInstance("instance", "service", "standard",
+				null);
+		assertThat(instance.withPlan("other", null).isNew()).isTrue();
+
+		instance.markPersisted();
+		assertThat(instance.withPlan("other", null).isNew()).isFalse();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.quota;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.service.ServicePlans;
+
+public class BindingQuotaServiceTests {
+	private final BindingQuotaProperties properties = new BindingQuotaProperties();
+	private final ServiceBindingRepository bindingRepository = mock(ServiceBindingRepository.class);
+	private final ServicePlans servicePlans = mock(ServicePlans.class);
+
+	private BindingQuotaService quotaService;
+
+	@Before
+	public void setUp() {
+		when(servicePlans.nameOf(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+		when(bindingRepository.countByInstance()).thenReturn(Collections.emptyList());
+		quotaService = new BindingQuotaService(properties, bindingRepository, servicePlans);
+	}
+
+	@Test
+	public void releasedReservationsFreeRoomOnTheInstance() {
+		properties.setMaxBindingsPerInstance(1);
+
+		BindingQuotaService.Reservation reservation = quotaService.reserve("instance", "plan");
+		assertThatThrownBy(() -> quotaService.reserve("instance", "plan"))
+				.isInstanceOf(BindingQuotaExceededException.class);
+
+		reservation.release();
+		reservation.release();
+		quotaService.reserve("instance", "plan").commit();
+		assertThat(instanceBindings("instance")).isEqualTo(1L);
+	}
+
+	@Test
+	public void planLimitSpansInstancesAndRejectionsDoNotLeak() {
+		BindingQuotaProperties.PlanQuota planQuota = new BindingQuotaProperties.PlanQuota();
+		planQuota.setMaxBindings(2);
+		properties.getPlans().put("plan", planQuota);
+
+		quotaService.reserve("first", "plan").commit();
+		quotaService.reserve("second", "plan").commit();
+		assertThatThrownBy(() -> quotaService.reserve("third", "plan"))
+				.isInstanceOf(BindingQuotaExceededException.class)
+				.hasMessageContaining("Plan plan");
+
+		assertThat(planBindings("plan")).isEqualTo(2L);
+		assertThat(instanceBindings("third")).isEqualTo(0L);
+	}
+
+	@Test
+	public void reconcileCorrectsDriftButKeepsReservationsInFlight() {
+		quotaService.reserve("drifted", "plan").commit();
+		quotaService.reserve("drifted", "plan").commit();
+		quotaService.reserve("busy", "plan");
+		when(bindingRepository.countByInstance()).thenReturn(Collections.singletonList(
+				new Object[] { "drifted", "plan", 1L }));
+
+		quotaService.reconcile();
+
+		assertThat(instanceBindings("drifted")).isEqualTo(1L);
+		assertThat(instanceBindings("busy")).isEqualTo(1L);
+		assertThat(planBindings("plan")).isEqualTo(2L);
+	}
+
+	@Test
+	public void planChangeMovesTheInstanceBindings() {
+		quotaService.reserve("instance", "old").commit();
+
+		quotaService.planChanged("instance", "new");
+
+		assertThat(planBindings("old")).isEqualTo(0L);
+		assertThat(planBindings("new")).isEqualTo(1L);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object usage(String group, String id) {
+		Map<String, Object> usage = (Map<String, Object>) quotaService.snapshot().get(group);
+		Map<String, Object> entry = (Map<String, Object>) usage.get(id);
+		return entry != null ? entry.get("bindings") : 0L;
+	}
+
+	private Object instanceBindings(String instanceId) {
+		return usage("instances", instanceId);
+	}
+
+	private Object planBindings(String planId) {
+		return usage("plans", planId);
+	}
+}
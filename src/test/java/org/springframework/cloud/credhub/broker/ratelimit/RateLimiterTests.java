@@ -0,0 +1,68 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.Test;
+
+public class RateLimiterTests {
+	private final RateLimitProperties properties = new RateLimitProperties();
+
+	@Test
+	public void bucketRejectsNonPositiveCapacity() {
+		assertThatThrownBy(() -> new TokenBucket(0, 10))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("Capacity");
+	}
+
+	@Test
+	public void bucketRejectsNonPositiveRefillRate() {
+		assertThatThrownBy(() -> new TokenBucket(10, 0))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("Refill rate");
+		assertThatThrownBy(() -> new TokenBucket(10, Double.NaN))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void bucketServesItsCapacityInABurst() {
+		TokenBucket bucket = new TokenBucket(3, 0.001);
+
+		assertThat(bucket.tryAcquire()).isZero();
+		assertThat(bucket.tryAcquire()).isZero();
+		assertThat(bucket.tryAcquire()).isZero();
+		assertThat(bucket.tryAcquire()).isPositive();
+	}
+
+	@Test
+	public void limiterFailsFastOnAnInvalidLimit() {
+		properties.getPrincipals().put("cf", new RateLimitProperties.Limit(10, -1));
+
+		assertThatThrownBy(() -> new RateLimiter(properties))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageStartingWith("Invalid limit broker.rate-limit.principals.cf");
+	}
+
+	@Test
+	public void limiterAcceptsTheDefaults() {
+		RateLimiter rateLimiter = new RateLimiter(properties);
+
+		assertThat(rateLimiter.tryAcquire("cf", OsbOperation.values()[0])).isZero();
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.persistence.EntityManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cloud.credhub.broker.credhub.CredentialNames;
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.model.User;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+public class ServiceBindingRepositoryTests {
+	@Autowired
+	private ServiceBindingRepository bindingRepository;
+
+	@Autowired
+	private ServiceInstanceRepository instanceRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	public void linksLegacyBindingsThroughTheirCredhubReference() {
+		instanceRepository.saveAndFlush(new ServiceInstance("instance", "service",
+				"standard-plan", null));
+		instanceRepository.saveAndFlush(new ServiceInstance("instance-2", "service",
+				"standard-plan", null));
+		insertLegacyBinding("legacy", "/c/instance/standard-plan/legacy/legacy");
+		insertLegacyBinding("other", "/c/instance-2/standard-plan/other/other");
+
+		int linked = bindingRepository.linkLegacyBindings("instance",
+				CredentialNames.instancePath("instance") + "%");
+
+		assertThat(linked).isEqualTo(1);
+		assertThat(bindingRepository.findBindingIdsByInstanceId("instance"))
+				.containsExactly("legacy");
+		assertThat(bindingRepository.findBindingIdsByInstanceId("instance-2")).isEmpty();
+	}
+
+	@Test
+	public void findsThePlacementOfALegacyBinding() {
+		insertLegacyBinding("legacy", "/c/instance/standard-plan/legacy/legacy");
+
+		BindingPlacement placement = bindingRepository.findPlacementByBindingId("legacy")
+				.orElseThrow(IllegalStateException::new);
+
+		assertThat(placement.getBindingId()).isEqualTo("legacy");
+		assertThat(placement.getInstanceId()).isNull();
+		assertThat(placement.getPlanId()).isNull();
+		assertThat(placement.getCredentialPlanId()).isNull();
+	}
+
+	@Test
+	public void findsTheBrokerUsersOfAnInstancesBindings() {
+		instanceRepository.saveAndFlush(new ServiceInstance("instance", "service",
+				"standard-plan", null));
+		insertLegacyBinding("password", "/c/instance/standard-plan/password/password");
+		insertLegacyBinding("certificate", "/c/instance/standard-plan/certificate/certificate");
+		bindingRepository.linkLegacyBindings("instance",
+				CredentialNames.instancePath("instance") + "%");
+		userRepository.saveAndFlush(new User("password", "secret"));
+
+		assertThat(bindingRepository.findBindingUsersByInstanceId("instance"))
+				.extracting(row -> row[0] + "=" + row[1])
+				.containsExactlyInAnyOrder("password=password", "certificate=null");
+	}
+
+	private void insertLegacyBinding(String bindingId, String credhubRef) {
+		entityManager.createNativeQuery("INSERT INTO service_bindings (binding_id) VALUES (?)")
+				.setParameter(1, bindingId).executeUpdate();
+		entityManager.createNativeQuery("INSERT INTO service_binding_credentials "
+				+ "(binding_id, credential_name, credential_value) VALUES (?, 'credhub-ref', ?)")
+				.setParameter(1, bindingId).setParameter(2, credhubRef).executeUpdate();
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.credhub.broker.audit.AuditTrail;
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.quota.BindingQuotaService;
+import org.springframework.cloud.credhub.broker.repository.ServiceInstanceRepository;
+import org.springframework.cloud.credhub.broker.update.BindingCredentialPropagator;
+import org.springframework.cloud.servicebroker.model.instance.GetLastServiceOperationRequest;
+import org.springframework.cloud.servicebroker.model.instance.OperationState;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class CredentialStoreServiceInstanceServiceTests {
+	private static final String CERTIFICATE_PLAN = CredhubServiceInstanceBindingServiceTests.CERTIFICATE_PLAN;
+	private static final String STANDARD_PLAN = CredhubServiceInstanceBindingServiceTests.STANDARD_PLAN;
+
+	private final ServiceInstanceRepository instanceRepository = mock(
+			ServiceInstanceRepository.class);
+	private final BindingCredentialPropagator propagator = mock(
+			BindingCredentialPropagator.class);
+
+	private CredentialStoreServiceInstanceService service;
+
+	@Before
+	public void setUp() {
+		service = new CredentialStoreServiceInstanceService(instanceRepository,
+				mock(CredhubServiceInstanceBindingService.class), mock(AuditTrail.class),
+				new TransactionTemplate(mock(PlatformTransactionManager.class)),
+				CredhubServiceInstanceBindingServiceTests.servicePlans(), propagator,
+				mock(BindingQuotaService.class));
+	}
+
+	@Test
+	public void lastOperationComparesThePlanRecordedInTheOperation() {
+		givenInstanceOn(CERTIFICATE_PLAN);
+
+		OperationState state = service.getLastOperation(GetLastServiceOperationRequest
+				.builder().serviceInstanceId("instance")
+				.operation("1530000000000-" + CERTIFICATE_PLAN).build())
+				.getState();
+
+		assertThat(state).isEqualTo(OperationState.SUCCEEDED);
+	}
+
+	@Test
+	public void lastOperationReportsAnInterruptedUpdate() {
+		givenInstanceOn(STANDARD_PLAN);
+
+		OperationState state = service.getLastOperation(GetLastServiceOperationRequest
+				.builder().serviceInstanceId("instance").planId(STANDARD_PLAN)
+				.operation("1530000000000-" + CERTIFICATE_PLAN).build())
+				.getState();
+
+		assertThat(state).isEqualTo(OperationState.FAILED);
+	}
+
+	private void givenInstanceOn(String planId) {
+		when(instanceRepository.findById("instance")).thenReturn(Optional
+				.of(new ServiceInstance("instance", "service", planId, null)));
+	}
+}
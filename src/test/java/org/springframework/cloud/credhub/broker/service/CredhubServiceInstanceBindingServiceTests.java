@@ -0,0 +1,365 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.credhub.broker.audit.AuditAction;
+import org.springframework.cloud.credhub.broker.audit.AuditResource;
+import org.springframework.cloud.credhub.broker.audit.AuditTrail;
+import org.springframework.cloud.credhub.broker.certificate.CertificateIssuer;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShards;
+import org.springframework.cloud.credhub.broker.credhub.CredentialNames;
+import org.springframework.cloud.credhub.broker.model.ApplicationInformation;
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.model.User;
+import org.springframework.cloud.credhub.broker.quota.BindingQuotaService;
+import org.springframework.cloud.credhub.broker.repository.BindingPlacement;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.repository.ServiceInstanceRepository;
+import org.springframework.cloud.credhub.broker.update.BindingCredentialPropagator;
+import org.springframework.cloud.credhub.broker.update.InstanceUpdate;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerConcurrencyException;
+import org.springframework.cloud.servicebroker.model.Context;
+import org.springframework.cloud.servicebroker.model.catalog.Catalog;
+import org.springframework.cloud.servicebroker.model.catalog.Plan;
+import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.binding.DeleteServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.catalog.ServiceDefinition;
+import org.springframework.credhub.core.CredHubException;
+import org.springframework.credhub.core.CredHubOperations;
+import org.springframework.credhub.support.CredentialDetails;
+import org.springframework.credhub.support.CredentialName;
+import org.springframework.credhub.support.CredentialRequest;
+import org.springframework.credhub.support.CredentialType;
+import org.springframework.credhub.support.certificate.CertificateCredential;
+import org.springframework.credhub.support.certificate.CertificateCredentialRequest;
+import org.springframework.credhub.support.json.JsonCredential;
+import org.springframework.credhub.support.json.JsonCredentialRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class CredhubServiceInstanceBindingServiceTests {
+	static final String STANDARD_PLAN = "standard-plan";
+	static final String CERTIFICATE_PLAN = "certificate-plan";
+
+	private final ServiceBindingRepository bindingRepository = mock(
+			ServiceBindingRepository.class);
+	private final ServiceInstanceRepository instanceRepository = mock(
+			ServiceInstanceRepository.class);
+	private final UserService userService = mock(UserService.class);
+	private final CredHubShards credHubShards = mock(CredHubShards.class);
+	private final CredHubOperations operations = mock(CredHubOperations.class);
+	private final CertificateIssuer certificateIssuer = mock(CertificateIssuer.class);
+	private final AuditTrail auditTrail = mock(AuditTrail.class);
+	private final BindingQuotaService quotaService = mock(BindingQuotaService.class);
+	private final BindingCredentialPropagator propagator = mock(
+			BindingCredentialPropagator.class);
+	private final PlatformTransactionManager transactionManager = mock(
+			PlatformTransactionManager.class);
+
+	private final BindingPlacement placement = mock(BindingPlacement.class);
+	private final CredentialName name = CredentialNames.forBinding("instance",
+			STANDARD_PLAN, "binding");
+	private final CertificateCredential certificate = new CertificateCredential(
+			"certificate", "ca", "key");
+
+	private CredhubServiceInstanceBindingService service;
+
+	@SuppressWarnings("unchecked")
+	static <T> ObjectProvider<T> provider(T bean) {
+		ObjectProvider<T> provider = mock(ObjectProvider.class);
+		when(provider.getIfAvailable()).thenReturn(bean);
+		return provider;
+	}
+
+	static ServicePlans servicePlans() {
+		return new ServicePlans(Catalog.builder().serviceDefinitions(ServiceDefinition
+				.builder().id("service").name("credentialstore").description("store")
+				.plans(Plan.builder().id(STANDARD_PLAN).name(ServicePlans.STANDARD)
+								.description("standard").build(),
+						Plan.builder().id(CERTIFICATE_PLAN).name(ServicePlans.CERTIFICATE)
+								.description("certificate").build())
+				.build()).build());
+	}
+
+	@Before
+	public void setUp() {
+		when(credHubShards.operations("default")).thenReturn(operations);
+		when(placement.getBindingId()).thenReturn("binding");
+		when(placement.getInstanceId()).thenReturn("instance");
+		when(placement.getPlanId()).thenReturn(STANDARD_PLAN);
+		when(placement.getCredentialPlanId()).thenReturn(STANDARD_PLAN);
+		when(placement.getAppGuid()).thenReturn("app");
+		when(placement.getCredhubShard()).thenReturn("default");
+		when(certificateIssuer.issue("binding", "instance")).thenReturn(certificate);
+		service = new CredhubServiceInstanceBindingService(bindingRepository,
+				instanceRepository, userService, credHubShards,
+				new ApplicationInformation("https://broker"), Runnable::run,
+				new TransactionTemplate(transactionManager), auditTrail,
+				quotaService, servicePlans(), certificateIssuer, provider(propagator));
+	}
+
+	@Test
+	public void rewriteReplacesPasswordWithCertificate() {
+		givenCurrent(CredentialType.JSON, new JsonCredential());
+
+		service.rewriteCredential(placement, CERTIFICATE_PLAN);
+
+		verify(operations).deleteByName(name);
+		List<CredentialRequest<?>> written = written(1);
+		assertThat(written.get(0)).isInstanceOf(CertificateCredentialRequest.class);
+		assertThat(written.get(0).getValue()).isSameAs(certificate);
+		verify(userService).deleteUser("binding");
+	}
+
+	@Test
+	public void rewriteSkipsCredentialThatAlreadyHasThePlanType() {
+		givenCurrent(CredentialType.CERTIFICATE, certificate);
+
+		service.rewriteCredential(placement, CERTIFICATE_PLAN);
+
+		verify(operations, never()).deleteByName(any());
+		verify(operations, never()).write(any());
+	}
+
+	@Test
+	public void rewriteWritesMissingCredentialWithoutDeleting() {
+		when(operations.getByName(eq(name), eq(Object.class)))
+				.thenThrow(new CredHubException(HttpStatus.NOT_FOUND));
+
+		service.rewriteCredential(placement, CERTIFICATE_PLAN);
+
+		verify(operations, never()).deleteByName(any());
+		assertThat(written(1).get(0)).isInstanceOf(CertificateCredentialRequest.class);
+	}
+
+	@Test
+	public void rewriteRestoresPreviousCredentialWhenWriteFails() {
+		JsonCredential password = new JsonCredential(
+				Collections.singletonMap("password", "secret"));
+		givenCurrent(CredentialType.JSON, password);
+		when(operations.write(any()))
+				.thenThrow(new CredHubException(HttpStatus.SERVICE_UNAVAILABLE))
+				.thenReturn(null);
+
+		assertThatThrownBy(() -> service.rewriteCredential(placement, CERTIFICATE_PLAN))
+				.isInstanceOf(CredHubException.class);
+
+		List<CredentialRequest<?>> written = written(2);
+		assertThat(written.get(1)).isInstanceOf(JsonCredentialRequest.class);
+		assertThat(written.get(1).getValue()).isEqualTo(password);
+		verify(userService, never()).deleteUser("binding");
+	}
+
+	@Test
+	public void bindWithoutBindResourceGrantsNoAppPermission() {
+		when(instanceRepository.findById("instance")).thenReturn(Optional.of(
+				new ServiceInstance("instance", "service", STANDARD_PLAN, null)));
+		when(quotaService.reserve("instance", STANDARD_PLAN))
+				.thenReturn(mock(BindingQuotaService.Reservation.class));
+		when(credHubShards.shardFor("instance")).thenReturn("default");
+		when(userService.createUser(eq("binding"), any(), any()))
+				.thenReturn(new User("binding", "password"));
+		doReturn(new CredentialDetails<>("id", name, CredentialType.JSON, new JsonCredential()))
+				.when(operations).write(any());
+
+		service.createServiceInstanceBinding(CreateServiceInstanceBindingRequest.builder()
+				.serviceInstanceId("instance").planId(STANDARD_PLAN).bindingId("binding")
+				.build());
+
+		assertThat(written(1).get(0).getAdditionalPermissions()).isEmpty();
+	}
+
+	@Test
+	public void bindIsRejectedWhileTheInstanceIsBeingUpdated() {
+		when(instanceRepository.findById("instance")).thenReturn(Optional.of(
+				new ServiceInstance("instance", "service", STANDARD_PLAN, null)));
+		InstanceUpdate update = mock(InstanceUpdate.class);
+		when(update.isInProgress()).thenReturn(true);
+		when(propagator.find("instance", null)).thenReturn(update);
+
+		assertThatThrownBy(() -> service.createServiceInstanceBinding(
+				CreateServiceInstanceBindingRequest.builder().serviceInstanceId("instance")
+						.planId(STANDARD_PLAN).bindingId("binding").build()))
+				.isInstanceOf(ServiceBrokerConcurrencyException.class);
+
+		verify(quotaService, never()).reserve(any(), any());
+		verify(operations, never()).write(any());
+	}
+
+	@Test
+	public void unbindNamesALegacyBindingAfterTheRequestPlan() {
+		BindingPlacement legacy = mock(BindingPlacement.class);
+		when(legacy.getBindingId()).thenReturn("binding");
+		when(legacy.getCredhubShard()).thenReturn("default");
+		when(bindingRepository.findPlacementByBindingId("binding"))
+				.thenReturn(Optional.of(legacy));
+
+		service.deleteServiceInstanceBinding(deleteRequest());
+
+		verify(operations).deleteByName(name);
+		verify(userService).deleteUser("binding");
+		verify(bindingRepository).deleteByBindingId("binding");
+		verify(quotaService).released("instance", STANDARD_PLAN);
+	}
+
+	@Test
+	public void unbindTreatsAMissingCredentialAsDeleted() {
+		when(bindingRepository.findPlacementByBindingId("binding"))
+				.thenReturn(Optional.of(placement));
+		doThrow(new CredHubException(HttpStatus.NOT_FOUND)).when(operations)
+				.deleteByName(name);
+
+		service.deleteServiceInstanceBinding(deleteRequest());
+
+		verify(userService).deleteUser("binding");
+		verify(bindingRepository).deleteByBindingId("binding");
+	}
+
+	@Test
+	public void unbindKeepsTheBindingWhenCredHubFails() {
+		when(bindingRepository.findPlacementByBindingId("binding"))
+				.thenReturn(Optional.of(placement));
+		doThrow(new CredHubException(HttpStatus.INTERNAL_SERVER_ERROR)).when(operations)
+				.deleteByName(name);
+
+		assertThatThrownBy(() -> service.deleteServiceInstanceBinding(deleteRequest()))
+				.isInstanceOf(CredHubException.class);
+
+		verify(bindingRepository, never()).deleteByBindingId("binding");
+	}
+
+	@Test
+	public void unbindRecordsNoUserDeletionForBindingsWithoutAUser() {
+		when(bindingRepository.findPlacementByBindingId("binding"))
+				.thenReturn(Optional.of(placement));
+		when(userService.deleteUser("binding")).thenReturn(0);
+
+		service.deleteServiceInstanceBinding(deleteRequest());
+
+		verify(auditTrail, never()).record(eq(AuditAction.DELETE), eq(AuditResource.USER),
+				any(), any(), any());
+		verify(auditTrail).record(AuditAction.DELETE, AuditResource.SERVICE_BINDING,
+				"binding", "instance", null);
+	}
+
+	@Test
+	public void deleteServiceInstanceBindingsRecordsUserDeletionsOnlyForBrokerUsers() {
+		when(credHubShards.shardFor("instance")).thenReturn("default");
+		when(operations.findByPath(CredentialNames.instancePath("instance")))
+				.thenReturn(Collections.emptyList());
+		when(bindingRepository.findBindingUsersByInstanceId("instance")).thenReturn(
+				Arrays.asList(new Object[] { "password", "password" },
+						new Object[] { "certificate", null }));
+
+		service.deleteServiceInstanceBindings("instance", null, () -> { });
+
+		verify(auditTrail).record(AuditAction.DELETE, AuditResource.USER, "password",
+				"instance", null);
+		verify(auditTrail, never()).record(AuditAction.DELETE, AuditResource.USER,
+				"certificate", "instance", null);
+		verify(auditTrail).record(AuditAction.DELETE, AuditResource.SERVICE_BINDING,
+				"certificate", "instance", null);
+	}
+
+	@Test
+	public void deleteServiceInstanceBindingsDeletesTheInstanceInTheSameTransaction() {
+		when(credHubShards.shardFor("instance")).thenReturn("default");
+		when(operations.findByPath(CredentialNames.instancePath("instance")))
+				.thenReturn(Collections.emptyList());
+		Runnable deleteInstance = mock(Runnable.class);
+
+		service.deleteServiceInstanceBindings("instance", null, deleteInstance);
+
+		InOrder inOrder = inOrder(bindingRepository, transactionManager, deleteInstance);
+		inOrder.verify(bindingRepository).linkLegacyBindings("instance", "/c/instance/%");
+		inOrder.verify(transactionManager).getTransaction(any());
+		inOrder.verify(bindingRepository).deleteByInstanceId("instance");
+		inOrder.verify(deleteInstance).run();
+		inOrder.verify(transactionManager).commit(any());
+		verify(transactionManager, times(1)).getTransaction(any());
+	}
+
+	@Test
+	public void deleteBindingsForAppTreatsMissingCredentialsAsDeleted() {
+		BindingPlacement failing = mock(BindingPlacement.class);
+		when(failing.getBindingId()).thenReturn("failing");
+		when(failing.getInstanceId()).thenReturn("instance");
+		when(failing.getCredentialPlanId()).thenReturn(STANDARD_PLAN);
+		when(failing.getCredhubShard()).thenReturn("default");
+		when(bindingRepository.findAllPlacementsByAppGuid("app"))
+				.thenReturn(Arrays.asList(placement, failing));
+		doThrow(new CredHubException(HttpStatus.NOT_FOUND)).when(operations)
+				.deleteByName(name);
+		doThrow(new CredHubException(HttpStatus.INTERNAL_SERVER_ERROR)).when(operations)
+				.deleteByName(CredentialNames.forBinding("instance", STANDARD_PLAN,
+						"failing"));
+		Context admin = AuditTrail.adminIdentity("admin");
+
+		Map<String, Object> result = service.deleteBindingsForApp("app", admin);
+
+		assertThat(result.get("deleted")).isEqualTo(Collections.singletonList("binding"));
+		assertThat(result.get("failed")).isEqualTo(Collections.singletonList("failing"));
+		verify(bindingRepository).deleteByBindingIds(Collections.singletonList("binding"));
+		verify(auditTrail).record(AuditAction.DELETE, AuditResource.SERVICE_BINDING,
+				"binding", "instance", admin);
+	}
+
+	private static DeleteServiceInstanceBindingRequest deleteRequest() {
+		return DeleteServiceInstanceBindingRequest.builder().serviceInstanceId("instance")
+				.planId(STANDARD_PLAN).bindingId("binding").build();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void givenCurrent(CredentialType type, Object value) {
+		when(operations.getByName(eq(name), eq(Object.class)))
+				.thenReturn(new CredentialDetails<>("id", name, type, value));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private List<CredentialRequest<?>> written(int times) {
+		ArgumentCaptor<CredentialRequest> requests = ArgumentCaptor
+				.forClass(CredentialRequest.class);
+		verify(operations, times(times)).write(requests.capture());
+		return (List) requests.getAllValues();
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.credhub.broker.model.User;
+import org.springframework.cloud.credhub.broker.repository.UserRepository;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class LocalUserDetailsServiceTests {
+	private UserRepository userRepository;
+	private LocalUserDetailsService service;
+
+	@Before
+	public void setUp() {
+		userRepository = mock(UserRepository.class);
+		service = new LocalUserDetailsService(userRepository,
+				new TransactionTemplate(mock(PlatformTransactionManager.class)));
+	}
+
+	@Test
+	public void looksUpAMissAgainOnThePrimary() {
+		when(userRepository.findByUsername("binding")).thenReturn(null)
+				.thenReturn(new User("binding", "secret", "FULL_ACCESS"));
+
+		assertThat(service.loadUserByUsername("binding").getPassword())
+				.isEqualTo("secret");
+		verify(userRepository, times(2)).findByUsername("binding");
+	}
+
+	@Test
+	public void failsWhenThePrimaryMissesToo() {
+		assertThatThrownBy(() -> service.loadUserByUsername("unknown"))
+				.isInstanceOf(UsernameNotFoundException.class);
+		verify(userRepository, times(2)).findByUsername("unknown");
+	}
+}
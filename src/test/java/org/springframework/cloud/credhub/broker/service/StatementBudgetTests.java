@@ -0,0 +1,227 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cloud.credhub.broker.audit.AuditTrail;
+import org.springframework.cloud.credhub.broker.certificate.CertificateIssuer;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShards;
+import org.springframework.cloud.credhub.broker.credhub.CredentialNames;
+import org.springframework.cloud.credhub.broker.model.ApplicationInformation;
+import org.springframework.cloud.credhub.broker.quota.BindingQuotaService;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.repository.ServiceInstanceRepository;
+import org.springframework.cloud.credhub.broker.repository.UserRepository;
+import org.springframework.cloud.credhub.broker.tracing.TracingProperties;
+import org.springframework.cloud.credhub.broker.update.BindingCredentialPropagator;
+import org.springframework.cloud.servicebroker.model.binding.BindResource;
+import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.binding.DeleteServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.binding.GetServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.instance.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.instance.GetServiceInstanceRequest;
+import org.springframework.context.annotation.Import;
+import org.springframework.credhub.core.CredHubOperations;
+import org.springframework.credhub.support.CredentialDetails;
+import org.springframework.credhub.support.CredentialRequest;
+import org.springframework.credhub.support.CredentialType;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs each OSB operation against the JPA repositories and checks the statements it
+ * prepares, as counted by Hibernate statistics, against the budgets configured under
+ * {@code broker.tracing.statement-budgets}.
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(StatementBudgetTests.Config.class)
+public class StatementBudgetTests {
+	private static final String PLAN = CredhubServiceInstanceBindingServiceTests.STANDARD_PLAN;
+
+	@Autowired
+	private ServiceInstanceRepository instanceRepository;
+
+	@Autowired
+	private ServiceBindingRepository bindingRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private TracingProperties tracingProperties;
+
+	private Statistics statistics;
+	private CredentialStoreServiceInstanceService instanceService;
+	private CredhubServiceInstanceBindingService bindingService;
+
+	@Before
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void setUp() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+		CredHubOperations operations = mock(CredHubOperations.class);
+		when(operations.write(any())).thenAnswer(invocation -> new CredentialDetails<>("id",
+				CredentialNames.of(((CredentialRequest) invocation.getArgument(0)).getName()),
+				CredentialType.JSON, null));
+		CredHubShards credHubShards = mock(CredHubShards.class);
+		when(credHubShards.shardFor(anyString())).thenReturn("default");
+		when(credHubShards.operations(anyString())).thenReturn(operations);
+
+		TransactionTemplate transactionTemplate = new TransactionTemplate(
+				transactionManager);
+		BindingQuotaService quotaService = mock(BindingQuotaService.class);
+		when(quotaService.reserve(anyString(), anyString()))
+				.thenReturn(mock(BindingQuotaService.Reservation.class));
+		ServicePlans servicePlans = CredhubServiceInstanceBindingServiceTests.servicePlans();
+		AuditTrail auditTrail = mock(AuditTrail.class);
+		BindingCredentialPropagator propagator = mock(BindingCredentialPropagator.class);
+
+		bindingService = new CredhubServiceInstanceBindingService(bindingRepository,
+				instanceRepository,
+				new UserService(userRepository, NoOpPasswordEncoder.getInstance()),
+				credHubShards, new ApplicationInformation("https://broker"), Runnable::run,
+				transactionTemplate, auditTrail, quotaService, servicePlans,
+				mock(CertificateIssuer.class),
+				CredhubServiceInstanceBindingServiceTests.provider(propagator));
+		instanceService = new CredentialStoreServiceInstanceService(instanceRepository,
+				bindingService, auditTrail, transactionTemplate, servicePlans,
+				propagator, quotaService);
+	}
+
+	@Test
+	public void createServiceInstance() {
+		assertWithinBudget("createServiceInstance", () -> createInstance("create"));
+	}
+
+	@Test
+	public void getServiceInstance() {
+		createInstance("get");
+
+		assertWithinBudget("getServiceInstance", () -> instanceService.getServiceInstance(
+				GetServiceInstanceRequest.builder().serviceInstanceId("get").build()));
+	}
+
+	@Test
+	public void deleteServiceInstance() {
+		createInstance("delete");
+		createBinding("delete", "delete-binding-1");
+		createBinding("delete", "delete-binding-2");
+
+		assertWithinBudget("deleteServiceInstance",
+				() -> instanceService.deleteServiceInstance(DeleteServiceInstanceRequest
+						.builder().serviceInstanceId("delete").planId(PLAN).build()));
+		assertThat(instanceRepository.existsById("delete")).isFalse();
+		assertThat(bindingRepository.existsById("delete-binding-1")).isFalse();
+	}
+
+	@Test
+	public void createServiceInstanceBinding() {
+		createInstance("bind");
+
+		assertWithinBudget("createServiceInstanceBinding",
+				() -> createBinding("bind", "bind-binding"));
+	}
+
+	@Test
+	public void getServiceInstanceBinding() {
+		createInstance("get-binding");
+		createBinding("get-binding", "get-binding-binding");
+
+		assertWithinBudget("getServiceInstanceBinding",
+				() -> bindingService.getServiceInstanceBinding(
+						GetServiceInstanceBindingRequest.builder()
+								.serviceInstanceId("get-binding")
+								.bindingId("get-binding-binding").build()));
+	}
+
+	@Test
+	public void deleteServiceInstanceBinding() {
+		createInstance("unbind");
+		createBinding("unbind", "unbind-binding");
+
+		assertWithinBudget("deleteServiceInstanceBinding",
+				() -> bindingService.deleteServiceInstanceBinding(
+						DeleteServiceInstanceBindingRequest.builder()
+								.serviceInstanceId("unbind").bindingId("unbind-binding")
+								.planId(PLAN).build()));
+		assertThat(bindingRepository.existsById("unbind-binding")).isFalse();
+	}
+
+	private void createInstance(String instanceId) {
+		instanceService.createServiceInstance(CreateServiceInstanceRequest.builder()
+				.serviceInstanceId(instanceId).serviceDefinitionId("service").planId(PLAN)
+				.parameters(Collections.singletonMap("key", "value")).build());
+	}
+
+	private void createBinding(String instanceId, String bindingId) {
+		bindingService.createServiceInstanceBinding(CreateServiceInstanceBindingRequest
+				.builder().serviceInstanceId(instanceId).bindingId(bindingId)
+				.serviceDefinitionId("service").planId(PLAN)
+				.bindResource(BindResource.builder().appGuid("app").build())
+				.parameters(Collections.singletonMap("key", "value")).build());
+	}
+
+	private void assertWithinBudget(String operation, Runnable call) {
+		Integer budget = tracingProperties.getStatementBudgets().get(operation);
+		assertThat(budget).as("budget of " + operation).isNotNull();
+
+		statistics.clear();
+		call.run();
+
+		assertThat(statistics.getPrepareStatementCount()).as(operation)
+				.isLessThanOrEqualTo(budget);
+	}
+
+	@TestConfiguration
+	@EnableConfigurationProperties(TracingProperties.class)
+	static class Config {
+	}
+}
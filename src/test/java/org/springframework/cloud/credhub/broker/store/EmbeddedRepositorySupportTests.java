@@ -0,0 +1,108 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+public class EmbeddedRepositorySupportTests {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmbeddedStore store;
+	private EmbeddedServiceInstanceRepository repository;
+
+	@Before
+	public void setUp() throws Exception {
+		store = new EmbeddedStore(folder.getRoot().toPath());
+		store.open();
+		repository = new EmbeddedServiceInstanceRepository(store);
+		repository.save(new ServiceInstance("b", "service", "standard", null));
+		repository.save(new ServiceInstance("a", "service", "certificate", null));
+		repository.save(new ServiceInstance("c", "other", "standard", null));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		store.close();
+	}
+
+	@Test
+	public void findAllSorted() {
+		assertThat(repository.findAll(Sort.by(Sort.Order.asc("planId"),
+				Sort.Order.desc("instanceId"))))
+				.extracting(ServiceInstance::getInstanceId).containsExactly("a", "c", "b");
+	}
+
+	@Test
+	public void findAllSortedPage() {
+		Page<ServiceInstance> page = repository
+				.findAll(PageRequest.of(1, 2, Sort.by("instanceId")));
+
+		assertThat(page.getContent()).extracting(ServiceInstance::getInstanceId)
+				.containsExactly("c");
+		assertThat(page.getTotalElements()).isEqualTo(3);
+	}
+
+	@Test
+	public void findAllByExample() {
+		Example<ServiceInstance> example = Example
+				.of(new ServiceInstance(null, "service", "standard", null));
+
+		assertThat(repository.findAll(example)).extracting(ServiceInstance::getInstanceId)
+				.containsExactly("b");
+		assertThat(repository.count(Example
+				.of(new ServiceInstance(null, "service", null, null)))).isEqualTo(2);
+		assertThat(repository.exists(Example
+				.of(new ServiceInstance(null, "missing", null, null)))).isFalse();
+	}
+
+	@Test
+	public void findAllByExampleWithMatcher() {
+		Example<ServiceInstance> example = Example.of(
+				new ServiceInstance(null, "SERV", null, null),
+				ExampleMatcher.matching().withIgnoreCase()
+						.withStringMatcher(ExampleMatcher.StringMatcher.STARTING));
+
+		assertThat(repository.findAll(example, Sort.by("instanceId")))
+				.extracting(ServiceInstance::getInstanceId).containsExactly("a", "b");
+	}
+
+	@Test
+	public void findOneRejectsSeveralMatches() {
+		assertThat(repository.findOne(Example
+				.of(new ServiceInstance(null, "other", null, null))))
+				.map(ServiceInstance::getInstanceId).hasValue("c");
+		assertThatThrownBy(() -> repository.findOne(Example
+				.of(new ServiceInstance(null, "service", null, null))))
+				.isInstanceOf(IncorrectResultSizeDataAccessException.class);
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.cloud.credhub.broker.model.ServiceBinding;
+import org.springframework.cloud.credhub.broker.model.ServiceInstance;
+import org.springframework.cloud.credhub.broker.model.User;
+import org.springframework.util.FileSystemUtils;
+
+public class EmbeddedStoreTests {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path directory;
+	private EmbeddedStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = folder.newFolder("store").toPath();
+		store = open(directory);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		store.close();
+	}
+
+	@Test
+	public void recoversFromTheLogAfterACrash() throws Exception {
+		populate();
+
+		EmbeddedStore recovered = open(copy());
+		try {
+			assertPopulated(recovered);
+		}
+		finally {
+			recovered.close();
+		}
+	}
+
+	@Test
+	public void recoversFromASnapshot() throws Exception {
+		populate();
+		store.snapshot();
+		store.saveInstance(new ServiceInstance("other", "service", "standard", null));
+
+		EmbeddedStore recovered = open(copy());
+		try {
+			assertPopulated(recovered);
+			assertThat(recovered.instances()).containsKey("other");
+		}
+		finally {
+			recovered.close();
+		}
+	}
+
+	@Test
+	public void failedWriteIsNotApplied() throws Exception {
+		store.close();
+
+		assertThatThrownBy(() -> store.saveInstance(
+				new ServiceInstance("instance", "service", "standard", null)))
+				.isInstanceOf(IllegalStateException.class);
+		assertThat(store.instances()).isEmpty();
+		store = open(folder.newFolder("fresh").toPath());
+	}
+
+	@Test
+	public void failsToOpenWithACorruptEarlierSegment() throws Exception {
+		populate();
+		store.close();
+		try (StoreLog log = new StoreLog(directory, 99)) {
+			log.append(StoreCodec.delete(StoreCodec.DELETE_INSTANCE, "other")).join();
+		}
+		Path first;
+		try (Stream<Path> files = Files.list(directory)) {
+			first = files.filter(file -> StoreLog.segmentNumber(file) >= 0).sorted()
+					.findFirst().get();
+		}
+		Files.write(first, new byte[] { 0, 0, 0, 9, 1 }, StandardOpenOption.APPEND);
+
+		assertThatThrownBy(() -> open(directory)).isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("Corrupt store log segment");
+		store = open(folder.newFolder("fresh").toPath());
+	}
+
+	private void populate() {
+		ServiceInstance instance = store.saveInstance(new ServiceInstance("instance",
+				"service", "certificate", "standard",
+				Collections.singletonMap("key", "value")));
+		store.saveBinding(new ServiceBinding("binding", instance, "app", "default",
+				null, Collections.singletonMap("credhub-ref", "/c/ref")));
+		store.saveUser(new User("binding", "password", "FULL_ACCESS"));
+	}
+
+	private static void assertPopulated(EmbeddedStore store) {
+		ServiceInstance instance = store.instances().get("instance");
+		assertThat(instance.getPlanId()).isEqualTo("certificate");
+		assertThat(instance.getCredentialPlanId()).isEqualTo("standard");
+		assertThat(instance.getParameters()).containsEntry("key", "value");
+		ServiceBinding binding = store.bindings().get("binding");
+		assertThat(binding.getAppGuid()).isEqualTo("app");
+		assertThat(binding.getServiceInstance().getInstanceId()).isEqualTo("instance");
+		assertThat(store.bindingIdsForApp("app")).containsExactly("binding");
+		assertThat(store.findUser("binding").getAuthorities()).containsExactly("FULL_ACCESS");
+	}
+
+	private Path copy() throws Exception {
+		Path copy = folder.newFolder().toPath();
+		FileSystemUtils.copyRecursively(directory, copy);
+		return copy;
+	}
+
+	private static EmbeddedStore open(Path directory) {
+		EmbeddedStore store = new EmbeddedStore(directory);
+		store.open();
+		return store;
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StoreLogTests {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void replaysRecordsInOrder() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		writeSegment(directory, 1, "a", "b");
+
+		assertThat(replay(StoreLog.segmentPath(directory, 1), true)).containsExactly("a", "b");
+	}
+
+	@Test
+	public void truncatesTornTailOfTheLastSegment() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		Path segment = writeSegment(directory, 1, "a", "b");
+		long intact = Files.size(segment);
+		Files.write(segment, new byte[] { 0, 0, 0, 9, 1 }, StandardOpenOption.APPEND);
+
+		assertThat(replay(segment, true)).containsExactly("a", "b");
+		assertThat(Files.size(segment)).isEqualTo(intact);
+	}
+
+	@Test
+	public void failsOnCorruptionInAnEarlierSegment() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		Path segment = writeSegment(directory, 1, "a", "b");
+		byte[] bytes = Files.readAllBytes(segment);
+		bytes[bytes.length - 1] ^= 0x7f;
+		Files.write(segment, bytes);
+
+		assertThatThrownBy(() -> replay(segment, false))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("Corrupt store log segment");
+		assertThat(Files.readAllBytes(segment)).isEqualTo(bytes);
+	}
+
+	@Test
+	public void rotationClosesTheSegment() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		try (StoreLog log = new StoreLog(directory, 1)) {
+			log.append(bytes("a")).join();
+			assertThat(log.rotate().join()).isEqualTo(1);
+			log.append(bytes("b")).join();
+		}
+
+		assertThat(replay(StoreLog.segmentPath(directory, 1), false)).containsExactly("a");
+		assertThat(replay(StoreLog.segmentPath(directory, 2), true)).containsExactly("b");
+	}
+
+	private static Path writeSegment(Path directory, long number, String... records)
+			throws Exception {
+		try (StoreLog log = new StoreLog(directory, number)) {
+			for (String record : records) {
+				log.append(bytes(record)).join();
+			}
+		}
+		return StoreLog.segmentPath(directory, number);
+	}
+
+	private static List<String> replay(Path segment, boolean last) {
+		List<String> records = new ArrayList<>();
+		StoreLog.replay(segment, last, in -> {
+			byte[] record = new byte[in.remaining()];
+			in.get(record);
+			records.add(new String(record, StandardCharsets.UTF_8));
+		});
+		return records;
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
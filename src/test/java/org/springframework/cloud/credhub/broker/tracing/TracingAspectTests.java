@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Proxy;
+
+import org.junit.Test;
+
+import org.springframework.boot.test.context.FilteredClassLoader;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.cloud.credhub.broker.config.TracingConfiguration;
+import org.springframework.cloud.credhub.broker.repository.UserRepository;
+import org.springframework.cloud.credhub.broker.store.EmbeddedUserRepository;
+import org.springframework.data.repository.Repository;
+
+public class TracingAspectTests {
+	@Test
+	public void namesTheRepositoryAnEmbeddedStoreImplements() {
+		assertThat(TracingAspect.repositoryName(EmbeddedUserRepository.class, Repository.class))
+				.isEqualTo("UserRepository");
+	}
+
+	@Test
+	public void skipsSpringDataInterfacesListedFirstOnAProxy() {
+		Object proxy = Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { Repository.class, UserRepository.class },
+				(target, method, args) -> null);
+
+		assertThat(TracingAspect.repositoryName(proxy.getClass(), Repository.class))
+				.isEqualTo("UserRepository");
+	}
+
+	@Test
+	public void fallsBackToTheDeclaringType() {
+		assertThat(TracingAspect.repositoryName(Object.class, Repository.class))
+				.isEqualTo("Repository");
+	}
+
+	@Test
+	public void backsOffWithoutJfr() {
+		new ApplicationContextRunner()
+				.withClassLoader(new FilteredClassLoader("jdk.jfr"))
+				.withUserConfiguration(TracingConfiguration.class)
+				.run(context -> assertThat(context).doesNotHaveBean(TracingProperties.class));
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.update;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.credhub.broker.repository.BindingPlacement;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.service.CredhubServiceInstanceBindingService;
+import org.springframework.cloud.servicebroker.model.instance.OperationState;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+public class BindingCredentialPropagatorTests {
+	private final ServiceBindingRepository bindingRepository = mock(
+			ServiceBindingRepository.class);
+	private final CredhubServiceInstanceBindingService bindingService = mock(
+			CredhubServiceInstanceBindingService.class);
+
+	private final BindingPlacement first = placement("binding-1");
+	private final BindingPlacement second = placement("binding-2");
+
+	private BindingCredentialPropagator propagator;
+
+	@Before
+	public void setUp() {
+		when(bindingRepository.findPlacementsByInstanceId(eq("instance"), any(Pageable.class)))
+				.thenReturn(new PageImpl<>(Arrays.asList(first, second)));
+		propagator = new BindingCredentialPropagator(bindingRepository, bindingService,
+				Runnable::run, new InstanceUpdateProperties());
+	}
+
+	@Test
+	public void appliesTheUpdateOnceEveryCredentialIsRewritten() {
+		AtomicBoolean applied = new AtomicBoolean();
+
+		InstanceUpdate update = propagator.start("instance", "old-plan", "new-plan",
+				() -> applied.set(true));
+		update.await();
+
+		assertThat(update.getState()).isEqualTo(OperationState.SUCCEEDED);
+		assertThat(applied).isTrue();
+		verify(bindingService).rewriteCredential(first, "new-plan");
+		verify(bindingService).rewriteCredential(second, "new-plan");
+	}
+
+	@Test
+	public void restoresRewrittenCredentialsWhenOneFails() {
+		doThrow(new IllegalStateException("unavailable")).when(bindingService)
+				.rewriteCredential(second, "new-plan");
+		AtomicBoolean applied = new AtomicBoolean();
+
+		InstanceUpdate update = propagator.start("instance", "old-plan", "new-plan",
+				() -> applied.set(true));
+		update.await();
+
+		assertThat(update.getState()).isEqualTo(OperationState.FAILED);
+		assertThat(update.getDescription()).contains("the plan was not changed");
+		assertThat(applied).isFalse();
+		verify(bindingService).rewriteCredential(first, "old-plan");
+		verify(bindingService, never()).rewriteCredential(second, "old-plan");
+	}
+
+	@Test
+	public void reportsCredentialsThatCouldNotBeRestored() {
+		doThrow(new IllegalStateException("unavailable")).when(bindingService)
+				.rewriteCredential(second, "new-plan");
+		doThrow(new IllegalStateException("unavailable")).when(bindingService)
+				.rewriteCredential(first, "old-plan");
+
+		InstanceUpdate update = propagator.start("instance", "old-plan", "new-plan",
+				() -> {
+				});
+		update.await();
+
+		assertThat(update.getDescription()).contains("could not be restored");
+		assertThat(update.progress()).containsEntry("unrestored", 1);
+	}
+
+	private static BindingPlacement placement(String bindingId) {
+		BindingPlacement placement = mock(BindingPlacement.class);
+		when(placement.getBindingId()).thenReturn(bindingId);
+		when(placement.getInstanceId()).thenReturn("instance");
+		return placement;
+	}
+}
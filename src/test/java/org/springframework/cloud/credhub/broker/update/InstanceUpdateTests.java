@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.update;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import org.springframework.cloud.servicebroker.model.instance.OperationState;
+
+public class InstanceUpdateTests {
+
+	@Test
+	public void operationRecordsStartAndPlan() {
+		InstanceUpdate update = new InstanceUpdate("instance", "old-plan",
+				"2b0d3a4e-6b8e-3c5c-9a1f-6d3c1d3e4f50", 1);
+
+		assertThat(InstanceUpdate.startOf(update.getOperation())).isNotNull();
+		assertThat(InstanceUpdate.planOf(update.getOperation()))
+				.isEqualTo("2b0d3a4e-6b8e-3c5c-9a1f-6d3c1d3e4f50");
+	}
+
+	@Test
+	public void foreignOperationsAreNotParsed() {
+		assertThat(InstanceUpdate.planOf(null)).isNull();
+		assertThat(InstanceUpdate.planOf("some-operation")).isNull();
+		assertThat(InstanceUpdate.startOf("operation")).isNull();
+	}
+
+	@Test
+	public void finishAppliesTheUpdate() {
+		InstanceUpdate update = new InstanceUpdate("instance", "old-plan", "new-plan", 1);
+		AtomicBoolean applied = new AtomicBoolean();
+		update.rewritten();
+
+		update.finish(() -> applied.set(true));
+
+		assertThat(applied).isTrue();
+		assertThat(update.getState()).isEqualTo(OperationState.SUCCEEDED);
+	}
+
+	@Test
+	public void finishReportsUnrestoredCredentials() {
+		InstanceUpdate update = new InstanceUpdate("instance", "old-plan", "new-plan", 2);
+		AtomicBoolean applied = new AtomicBoolean();
+		update.rewritten();
+		update.failed("binding-2", "boom");
+		update.restoreFailed("binding-1", "boom");
+
+		update.finish(() -> applied.set(true));
+
+		assertThat(applied).isFalse();
+		assertThat(update.getState()).isEqualTo(OperationState.FAILED);
+		assertThat(update.getDescription()).contains("1 rewritten credentials could not "
+				+ "be restored");
+		assertThat(update.progress()).containsEntry("unrestored", 1);
+	}
+}
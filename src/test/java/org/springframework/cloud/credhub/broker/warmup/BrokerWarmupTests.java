@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cloud.credhub.broker.warmup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.cloud.credhub.broker.certificate.CertificateIssuer;
+import org.springframework.cloud.credhub.broker.credhub.CredHubShards;
+import org.springframework.cloud.credhub.broker.repository.ServiceBindingRepository;
+import org.springframework.cloud.credhub.broker.repository.ServiceInstanceRepository;
+import org.springframework.cloud.credhub.broker.repository.UserRepository;
+import org.springframework.cloud.credhub.broker.service.UserService;
+import org.springframework.cloud.servicebroker.model.catalog.Catalog;
+import org.springframework.credhub.core.CredHubOperations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class BrokerWarmupTests {
+	private final WarmupProperties properties = new WarmupProperties();
+	private final UserService userService = mock(UserService.class);
+	private final CredHubShards credHubShards = mock(CredHubShards.class);
+	private final CredHubOperations credHubOperations = mock(CredHubOperations.class);
+
+	private BrokerWarmup warmup;
+
+	@Before
+	public void setUp() {
+		when(credHubShards.names()).thenReturn(Collections.singleton(CredHubShards.DEFAULT_SHARD));
+		when(credHubShards.operations(any())).thenReturn(credHubOperations);
+		warmup = new BrokerWarmup(properties, mock(ServiceInstanceRepository.class),
+				mock(ServiceBindingRepository.class), mock(UserRepository.class), userService,
+				credHubShards, Runnable::run, Catalog.builder().build(), new ObjectMapper(),
+				mock(CertificateIssuer.class), false);
+	}
+
+	@Test
+	public void aFailingStepDoesNotStopTheOthers() {
+		doThrow(new IllegalStateException("encoder down")).when(userService).warmUp();
+
+		warmup.run();
+
+		Map<String, Object> details = warmup.details();
+		assertThat(details).containsEntry("finished", true);
+		assertThat(step(details, "password")).containsEntry("status", "failed")
+				.containsEntry("error", "encoder down");
+		assertThat(step(details, "database")).containsEntry("status", "done");
+		assertThat(step(details, "credhub")).containsEntry("status", "done");
+		assertThat(step(details, "catalog")).containsEntry("status", "done");
+		assertThat(step(details, "certificate")).isNull();
+		assertThat(warmup.isReady()).isTrue();
+	}
+
+	@Test
+	public void gateRejectsRequestsUntilWarmupFinishes() throws Exception {
+		WarmupGateFilter filter = new WarmupGateFilter(warmup);
+
+		MockHttpServletResponse rejected = new MockHttpServletResponse();
+		MockFilterChain rejectedChain = new MockFilterChain();
+		filter.doFilter(new MockHttpServletRequest("PUT", "/v2/service_instances/a"),
+				rejected, rejectedChain);
+		assertThat(rejected.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+		assertThat(rejected.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("5");
+		assertThat(rejectedChain.getRequest()).isNull();
+
+		warmup.run();
+
+		MockFilterChain passedChain = new MockFilterChain();
+		filter.doFilter(new MockHttpServletRequest("PUT", "/v2/service_instances/a"),
+				new MockHttpServletResponse(), passedChain);
+		assertThat(passedChain.getRequest()).isNotNull();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> step(Map<String, Object> details, String name) {
+		return (Map<String, Object>) ((Map<String, Object>) details.get("steps")).get(name);
+	}
+}